@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.analytics;
+
+import com.pluralsight.io.*;
+import com.pluralsight.io.ReceiptStore.*;
+
+import java.util.*;
+
+/**
+ * Reads the line items back out of a stored {@link Receipt}.
+ * Encoded receipts are simply walked.
+ * In rendered ones, each line is an item indented two spaces per level, padded to a fixed width,
+ * and followed by the subtotal of it and everything under it if that is not zero.
+ * The scratch arrays are reused from one receipt to the next, so one parser should be used per thread.
+ */
+final class ReceiptParser {
+    // Matches the layout written by Receipt.
+    private static final int ITEM_WIDTH = 40;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long NOT_MONEY = Long.MIN_VALUE;
+
+    private String[] names;
+    private int[] depths;
+    private long[] prices;
+    private int[] lastAtDepth;
+    private int count;
+
+    ReceiptParser() {
+        names = new String[INITIAL_CAPACITY];
+        depths = new int[INITIAL_CAPACITY];
+        prices = new long[INITIAL_CAPACITY];
+        lastAtDepth = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Reads a stored receipt, replacing whatever was read before.
+     *
+     * @param receipt The stored receipt
+     * @return The number of lines
+     */
+    int parse(StoredReceipt receipt) {
+        if (!receipt.isEncoded())
+            return parse(receipt.text());
+        count = 0;
+        walk(receipt.receipt().getItem(), 0);
+        return count;
+    }
+
+    private void walk(LineItem item, int depth) {
+        grow(depth);
+        names[count] = item.getName();
+        depths[count] = depth;
+        prices[count] = item.getPriceCents();
+        count++;
+        for (var subItem : item.getSubItems())
+            walk(subItem, depth + 1);
+    }
+
+    /**
+     * Parses a rendered receipt, replacing whatever was parsed before.
+     * Afterwards each line's price is its own, with its subitems' subtotals taken back out.
+     *
+     * @param text The rendered receipt
+     * @return The number of lines
+     */
+    int parse(CharSequence text) {
+        count = 0;
+        lastAtDepth[0] = -1;
+        var length = text.length();
+        var start = 0;
+        while (start < length) {
+            var end = start;
+            while (end < length && text.charAt(end) != '\n')
+                end++;
+            var next = end + 1;
+            if (end > start && text.charAt(end - 1) == '\r')
+                end--;
+            parseLine(text, start, end);
+            start = next;
+        }
+        return count;
+    }
+
+    String getName(int line) {
+        return names[line];
+    }
+
+    int getDepth(int line) {
+        return depths[line];
+    }
+
+    long getPriceCents(int line) {
+        return prices[line];
+    }
+
+    private void parseLine(CharSequence text, int start, int end) {
+        var indent = start;
+        while (indent < end && text.charAt(indent) == ' ')
+            indent++;
+        if (indent == end)
+            return;
+        var depth = (indent - start) / 2;
+
+        // The price, if any, is the run of digits at the end of the line, and always starts after the padded name.
+        var priceStart = end;
+        while (priceStart > indent && isPriceChar(text.charAt(priceStart - 1)))
+            priceStart--;
+        var price = priceStart - start >= ITEM_WIDTH ? parseCents(text, priceStart, end) : NOT_MONEY;
+        var nameEnd = price == NOT_MONEY ? end : priceStart;
+        if (price == NOT_MONEY)
+            price = 0;
+        while (nameEnd > indent && text.charAt(nameEnd - 1) == ' ')
+            nameEnd--;
+
+        grow(depth);
+        names[count] = text.subSequence(indent, nameEnd).toString();
+        depths[count] = depth;
+        prices[count] = price;
+        // Take this line's subtotal back out of its parent's.
+        if (depth > 0 && lastAtDepth[depth - 1] >= 0)
+            prices[lastAtDepth[depth - 1]] -= price;
+        lastAtDepth[depth] = count;
+        if (depth + 1 < lastAtDepth.length)
+            lastAtDepth[depth + 1] = -1;
+        count++;
+    }
+
+    private void grow(int depth) {
+        if (count == names.length) {
+            var capacity = names.length * 2;
+            names = Arrays.copyOf(names, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+        }
+        if (depth + 1 >= lastAtDepth.length)
+            lastAtDepth = Arrays.copyOf(lastAtDepth, depth + INITIAL_CAPACITY);
+    }
+
+    private static boolean isPriceChar(char c) {
+        return c >= '0' && c <= '9' || c == '.' || c == '-';
+    }
+
+    /**
+     * @return The amount in cents, or {@link #NOT_MONEY} if the text is not an amount of money
+     */
+    private static long parseCents(CharSequence text, int start, int end) {
+        var i = start;
+        var negative = i < end && text.charAt(i) == '-';
+        if (negative)
+            i++;
+        // Always written with exactly two decimal places.
+        if (end - i < 4 || text.charAt(end - 3) != '.')
+            return NOT_MONEY;
+        var cents = 0L;
+        for (; i < end; i++) {
+            var c = text.charAt(i);
+            if (i == end - 3)
+                continue;
+            if (c < '0' || c > '9')
+                return NOT_MONEY;
+            cents = cents * 10 + (c - '0');
+        }
+        return negative ? -cents : cents;
+    }
+}
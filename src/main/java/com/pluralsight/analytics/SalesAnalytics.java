@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.analytics;
+
+import com.pluralsight.io.*;
+import com.pluralsight.io.ReceiptStore.*;
+
+import java.time.*;
+import java.time.temporal.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Answers questions about past sales by scanning receipt history.
+ * Each day of history is scanned as its own fork-join task,
+ * from the {@link ReceiptArchive} once the day has been archived and from the {@link ReceiptStore} until then,
+ * and the per-day results are merged as the tasks complete.
+ * Promotions taken off orders are reported as items of their own, in the {@value #DISCOUNT_CATEGORY} category,
+ * so that the items on a receipt always add up to its total.
+ */
+public final class SalesAnalytics {
+    private static final String SANDWICH_SUFFIX = " Sandwich";
+    private static final String EXTRA_PREFIX = "Extra ";
+    private static final String SANDWICH_CATEGORY = "Sandwich";
+    private static final String OTHER_CATEGORY = "Other";
+    private static final String DISCOUNT_CATEGORY = "Discount";
+
+    private final ReceiptStore store;
+    private final ReceiptArchive archive;
+    private final Function<String, String> categories;
+    private final Set<String> drinkSizes;
+    private final ZoneId zone;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<ReceiptParser> parsers;
+
+    /**
+     * @param store      The store of recent receipts
+     * @param archive    The archive of older receipts
+     * @param categories Gives the category of an item from its name, or {@code null} if it has none
+     * @param drinkSizes The names drink sizes are shown with on receipts, e.g. {@code Small}
+     */
+    public SalesAnalytics(ReceiptStore store, ReceiptArchive archive,
+                          Function<String, String> categories, Collection<String> drinkSizes) {
+        this.store = store;
+        this.archive = archive;
+        this.categories = categories;
+        this.drinkSizes = Set.copyOf(drinkSizes);
+        zone = archive.getZone();
+        pool = ForkJoinPool.commonPool();
+        parsers = ThreadLocal.withInitial(ReceiptParser::new);
+    }
+
+    /**
+     * Adds up the sales in a span of time.
+     *
+     * @param from   The start of the span, inclusive
+     * @param to     The end of the span, exclusive
+     * @param bucket The length of the spans of time to break the sales into, which must divide a day evenly
+     * @return The sales in that span
+     * @throws IllegalArgumentException If the bucket length does not divide a day evenly
+     */
+    public SalesReport scan(Instant from, Instant to, Duration bucket) {
+        if (bucket.isNegative() || bucket.isZero() || Duration.ofDays(1).toMillis() % bucket.toMillis() != 0)
+            throw new IllegalArgumentException("The bucket length must divide a day evenly, got " + bucket);
+
+        if (!from.isBefore(to))
+            return new SalesReport(Map.of());
+
+        var first = LocalDate.ofInstant(from, zone);
+        var days = (int) ChronoUnit.DAYS.between(first, LocalDate.ofInstant(to, zone)) + 1;
+        return new SalesReport(pool.invoke(new ScanTask(first, 0, days, from, to, bucket.toMillis())));
+    }
+
+    private void scanDay(LocalDate day, Instant from, Instant to, long bucket, Map<SalesKey, SalesTotal> totals) {
+        var dayStart = day.atStartOfDay(zone).toInstant();
+        var dayEnd = day.plusDays(1).atStartOfDay(zone).toInstant();
+        var start = from.isAfter(dayStart) ? from : dayStart;
+        var end = to.isBefore(dayEnd) ? to : dayEnd;
+        if (!start.isBefore(end))
+            return;
+
+        Consumer<StoredReceipt> action = receipt -> record(receipt, dayStart.toEpochMilli(), bucket, totals);
+        if (archive.hasDay(day))
+            archive.forEachBetween(start, end, action);
+        else
+            store.findBetween(start, end).forEach(action);
+    }
+
+    private void record(StoredReceipt receipt, long dayStart, long bucket, Map<SalesKey, SalesTotal> totals) {
+        var time = receipt.time().toEpochMilli();
+        var bucketStart = Instant.ofEpochMilli(dayStart + (time - dayStart) / bucket * bucket);
+
+        var parser = parsers.get();
+        var lines = parser.parse(receipt);
+        var sandwichDepth = -1;
+        var sandwichSize = "";
+        for (//noinspection ReassignedVariable
+            int i = 0; i < lines; i++) {
+            var depth = parser.getDepth(i);
+            var name = parser.getName(i);
+            // The whole order is the first line; it is not an item in itself.
+            if (depth == 0 && i == 0 && lines > 1)
+                continue;
+            if (depth <= sandwichDepth)
+                sandwichDepth = -1;
+            // Promotions are listed straight under the order, and are the only lines which take money off.
+            if (depth == 1 && parser.getPriceCents(i) < 0) {
+                totals.merge(new SalesKey(name, DISCOUNT_CATEGORY, "", bucketStart),
+                    new SalesTotal(1, parser.getPriceCents(i)), SalesTotal::plus);
+                continue;
+            }
+
+            String item;
+            String category;
+            String size;
+            if (name.endsWith(SANDWICH_SUFFIX)) {
+                sandwichDepth = depth;
+                sandwichSize = name.substring(0, name.length() - SANDWICH_SUFFIX.length());
+                item = SANDWICH_CATEGORY;
+                category = SANDWICH_CATEGORY;
+                size = sandwichSize;
+            } else {
+                item = name.startsWith(EXTRA_PREFIX) && categories.apply(name) == null
+                    ? name.substring(EXTRA_PREFIX.length())
+                    : name;
+                size = "";
+                if (sandwichDepth >= 0)
+                    size = sandwichSize;
+                else {
+                    var space = item.indexOf(' ');
+                    if (space > 0 && drinkSizes.contains(item.substring(0, space))) {
+                        size = item.substring(0, space);
+                        item = item.substring(space + 1);
+                    }
+                }
+                category = Objects.requireNonNullElse(categories.apply(item), OTHER_CATEGORY);
+            }
+
+            totals.merge(new SalesKey(item, category, size, bucketStart),
+                new SalesTotal(1, parser.getPriceCents(i)), SalesTotal::plus);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class ScanTask extends RecursiveTask<Map<SalesKey, SalesTotal>> {
+        private final LocalDate first;
+        private final int start;
+        private final int end;
+        private final Instant from;
+        private final Instant to;
+        private final long bucket;
+
+        private ScanTask(LocalDate first, int start, int end, Instant from, Instant to, long bucket) {
+            this.first = first;
+            this.start = start;
+            this.end = end;
+            this.from = from;
+            this.to = to;
+            this.bucket = bucket;
+        }
+
+        @Override
+        protected Map<SalesKey, SalesTotal> compute() {
+            if (end - start == 1) {
+                var totals = new HashMap<SalesKey, SalesTotal>();
+                scanDay(first.plusDays(start), from, to, bucket, totals);
+                return totals;
+            }
+
+            var mid = (start + end) >>> 1;
+            var left = new ScanTask(first, start, mid, from, to, bucket);
+            left.fork();
+            var right = new ScanTask(first, mid, end, from, to, bucket).compute();
+            return merge(left.join(), right);
+        }
+
+        private static Map<SalesKey, SalesTotal> merge(Map<SalesKey, SalesTotal> left, Map<SalesKey, SalesTotal> right) {
+            // Fold the smaller map into the larger one.
+            var into = left.size() >= right.size() ? left : right;
+            var smaller = into == left ? right : left;
+            smaller.forEach((key, total) -> into.merge(key, total, SalesTotal::plus));
+            return into;
+        }
+    }
+}
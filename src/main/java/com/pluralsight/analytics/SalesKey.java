@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.analytics;
+
+import java.time.*;
+
+/**
+ * Identifies one row of a {@link SalesReport}.
+ *
+ * @param item     The name of the item sold, without any "Extra" prefix
+ * @param category The category of the item, e.g. {@code Meat} or {@code Drink}
+ * @param size     The size the item was sold at, or an empty string if it has no size
+ * @param bucket   The start of the span of time the item was sold in
+ */
+public record SalesKey(String item, String category, String size, Instant bucket) {
+}
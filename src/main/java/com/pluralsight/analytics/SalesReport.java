@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.analytics;
+
+import java.time.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Units sold and revenue, broken down by item, category, size and span of time.
+ */
+public final class SalesReport {
+    private final Map<SalesKey, SalesTotal> rows;
+
+    SalesReport(Map<SalesKey, SalesTotal> rows) {
+        this.rows = Collections.unmodifiableMap(rows);
+    }
+
+    /**
+     * @return Every row of the report
+     */
+    public Map<SalesKey, SalesTotal> getRows() {
+        return rows;
+    }
+
+    /**
+     * Adds up the rows of the report under a coarser key.
+     *
+     * @param key How to group the rows
+     * @param <K> The type of key to group by
+     * @return The totals for each group, ordered by key where the key is comparable
+     */
+    public <K> Map<K, SalesTotal> rollUp(Function<? super SalesKey, ? extends K> key) {
+        Map<K, SalesTotal> totals = new HashMap<>();
+        rows.forEach((row, total) -> totals.merge(key.apply(row), total, SalesTotal::plus));
+        return sorted(totals);
+    }
+
+    /**
+     * @return The totals for each item
+     */
+    public Map<String, SalesTotal> byItem() {
+        return rollUp(SalesKey::item);
+    }
+
+    /**
+     * @return The totals for each category
+     */
+    public Map<String, SalesTotal> byCategory() {
+        return rollUp(SalesKey::category);
+    }
+
+    /**
+     * @return The totals for each size
+     */
+    public Map<String, SalesTotal> bySize() {
+        return rollUp(SalesKey::size);
+    }
+
+    /**
+     * @return The totals for each span of time
+     */
+    public Map<Instant, SalesTotal> byBucket() {
+        return rollUp(SalesKey::bucket);
+    }
+
+    /**
+     * @param item The name of an item
+     * @return The totals for that item in each span of time, e.g. to see how many of it sold per hour
+     */
+    public Map<Instant, SalesTotal> byBucket(String item) {
+        Map<Instant, SalesTotal> totals = new HashMap<>();
+        rows.forEach((row, total) -> {
+            if (row.item().equals(item))
+                totals.merge(row.bucket(), total, SalesTotal::plus);
+        });
+        return sorted(totals);
+    }
+
+    /**
+     * @return The totals across the whole report
+     */
+    public SalesTotal getTotal() {
+        return rows.values().stream().reduce(new SalesTotal(0, 0), SalesTotal::plus);
+    }
+
+    private static <K> Map<K, SalesTotal> sorted(Map<K, SalesTotal> totals) {
+        if (totals.keySet().stream().allMatch(Comparable.class::isInstance))
+            return Collections.unmodifiableMap(new TreeMap<>(totals));
+        return Collections.unmodifiableMap(totals);
+    }
+}
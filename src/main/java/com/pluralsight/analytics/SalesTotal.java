@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.analytics;
+
+/**
+ * The amount sold for one row of a {@link SalesReport}.
+ *
+ * @param units        The number of units sold
+ * @param revenueCents The revenue from those units, in cents
+ */
+public record SalesTotal(long units, long revenueCents) {
+    /**
+     * @param other Another total
+     * @return The sum of this total and the other
+     */
+    public SalesTotal plus(SalesTotal other) {
+        return new SalesTotal(units + other.units, revenueCents + other.revenueCents);
+    }
+}
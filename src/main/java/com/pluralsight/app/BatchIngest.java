@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.app;
+
+import com.pluralsight.io.*;
+import com.pluralsight.kitchen.*;
+import com.pluralsight.orders.*;
+import com.pluralsight.orders.breads.*;
+import com.pluralsight.orders.drinks.*;
+import com.pluralsight.orders.extras.*;
+import com.pluralsight.orders.toppings.*;
+import com.pluralsight.promotions.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Takes orders in bulk, such as catering and online orders, from a file with one JSON order on each line:
+ * {@code {"sandwiches": [...], "drinks": [...], "extras": [...]}}, with items as {@link OrderReader} reads them.
+ * <p>
+ * Orders flow through four stages, each on its own thread:
+ * parsing the JSON, validating it against the catalogs while holding the order's stock,
+ * pricing it with any promotions, and checking it out, which consumes the stock and records the receipt.
+ * Each stage hands orders to the next through a bounded queue,
+ * so a slow stage holds back the ones before it instead of letting orders pile up in memory.
+ * Orders which fail a stage are rejected, with any stock they held given back, and counted by reason.
+ * If the orders cannot all be read, those read so far are still seen through,
+ * and the report says it is incomplete.
+ */
+public final class BatchIngest {
+    /**
+     * The default number of orders which may wait between one stage and the next.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    private static final String[] STAGES = {"parse", "validate", "price", "persist"};
+    private static final Job END = new Job(0, null);
+    private static final String MALFORMED = "Malformed JSON";
+    private static final String INVALID = "Invalid order";
+    private static final String UNKNOWN_ITEM = "Unknown item";
+    private static final String EMPTY = "Empty order";
+    private static final String OUT_OF_STOCK = "Out of stock";
+    private static final String UNAVAILABLE = "No longer available";
+    private static final String FAILED = "Could not be processed";
+    private static final double NANOS_PER_SECOND = 1.0e9;
+
+    private final OrderReader reader;
+    private final PromotionFile promotions;
+    private final Checkout checkout;
+    private final int queueCapacity;
+
+    /**
+     * @param toppings      The file for toppings
+     * @param breads        The file for breads
+     * @param drinks        The file for drinks
+     * @param extras        The file for extras
+     * @param signatures    The file for signature sandwiches
+     * @param promotions    The file for promotions
+     * @param receipts      The writer to record sales with
+     * @param kitchen       The kitchen to send sold orders to
+     * @param queueCapacity The number of orders which may wait between one stage and the next
+     */
+    @SuppressWarnings("ConstructorWithTooManyParameters")
+    public BatchIngest(InventoriedFile<ToppingType> toppings,
+                       InventoriedFile<BreadType> breads,
+                       InventoriedFile<DrinkType> drinks,
+                       InventoriedFile<ExtraType> extras,
+                       SignatureFile signatures,
+                       PromotionFile promotions,
+                       AsyncReceiptWriter receipts,
+                       Kitchen kitchen,
+                       int queueCapacity) {
+        if (queueCapacity < 1)
+            throw new IllegalArgumentException("Queues must hold at least one order");
+        reader = new OrderReader(toppings, breads, drinks, extras, signatures);
+        this.promotions = promotions;
+        // Receipts are batched up by the writer, so the last stage doesn't wait on the disk for each one.
+        checkout = new Checkout(receipts, false, kitchen);
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Takes every order in a file.
+     * Receipts may still be waiting in the writer afterwards, until it is closed.
+     *
+     * @param file The file of orders, one JSON object to a line
+     * @return How it went
+     * @throws UncheckedIOException If the file could not be opened
+     */
+    public Report run(File file) {
+        try (var in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            return run(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read orders from " + file, e);
+        }
+    }
+
+    /**
+     * Takes every order from a reader.
+     * If the reader fails part way, or this thread is interrupted, the orders read so far are still seen through,
+     * and the report is marked incomplete.
+     *
+     * @param in Orders, one JSON object to a line
+     * @return How it went
+     */
+    @SuppressWarnings("FeatureEnvy")
+    public Report run(BufferedReader in) {
+        var run = new Run();
+        var start = System.nanoTime();
+        var lines = run.startStages();
+
+        long read = 0;
+        long lineNumber = 0;
+        var complete = true;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank())
+                    continue;
+                read++;
+                lines.put(new Job(lineNumber, line));
+            }
+        } catch (IOException e) {
+            System.err.println("Error: Could not read the orders after line " + lineNumber + "!");
+            e.printStackTrace(System.err);
+            complete = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        complete &= run.finish(lines);
+
+        return new Report(read, complete, run.accepted, run.revenueCents, Map.copyOf(run.rejections),
+            Duration.ofNanos(System.nanoTime() - start), run.busyTimes());
+    }
+
+    private boolean parse(Run run, Job job) {
+        try {
+            if (Json.parse(job.text) instanceof Map<?, ?> map) {
+                @SuppressWarnings("unchecked")
+                var request = (Map<String, Object>) map;
+                job.request = request;
+                return true;
+            }
+        } catch (IllegalArgumentException e) {
+            // Rejected below.
+        }
+        return run.reject(job, MALFORMED);
+    }
+
+    @SuppressWarnings({"FeatureEnvy", "OverlyComplexMethod"})
+    private boolean validate(Run run, Job job) {
+        var order = new Order();
+        job.order = order;
+        try {
+            for (var sandwich : OrderReader.getObjects(job.request, "sandwiches"))
+                if (!order.addSandwich(reader.readSandwich(sandwich)))
+                    return run.reject(job, OUT_OF_STOCK);
+            for (var drink : OrderReader.getObjects(job.request, "drinks"))
+                if (!order.addDrink(reader.readDrinkType(drink), OrderReader.readDrinkSize(drink)))
+                    return run.reject(job, OUT_OF_STOCK);
+            for (var extra : OrderReader.getObjects(job.request, "extras"))
+                if (!order.addExtra(reader.readExtra(extra)))
+                    return run.reject(job, OUT_OF_STOCK);
+        } catch (NoSuchElementException e) {
+            return run.reject(job, UNKNOWN_ITEM);
+        } catch (IllegalArgumentException e) {
+            return run.reject(job, INVALID);
+        }
+        job.request = null;
+        if (order.getSandwiches().isEmpty() && order.getDrinks().isEmpty() && order.getExtras().isEmpty())
+            return run.reject(job, EMPTY);
+        return true;
+    }
+
+    private boolean price(Job job) {
+        var promoted = promotions.applyTo(job.order);
+        job.receipt = new Receipt(promoted, job.order.getReservation());
+        job.totalCents = promoted.getTotalCents();
+        return true;
+    }
+
+    private boolean persist(Run run, Job job) {
+        return switch (checkout.checkOut(job.order, job.receipt)) {
+            // A receipt which could not be recorded has already been logged, but the sale still happened.
+            case DONE, UNRECORDED -> {
+                run.accepted++;
+                run.revenueCents += job.totalCents;
+                yield true;
+            }
+            case UNAVAILABLE -> run.reject(job, UNAVAILABLE);
+            case FAILED -> run.reject(job, FAILED);
+        };
+    }
+
+    /**
+     * The stages and tallies of a single {@link #run(BufferedReader)}.
+     */
+    private final class Run {
+        private final Map<String, Rejection> rejections;
+        private final long[] busyNanos;
+        private final Thread[] threads;
+        // Only the persist stage counts these, and busyNanos[i] only stage i.
+        // They are read after finish() has joined every stage, which is what makes the counts visible.
+        private long accepted;
+        private long revenueCents;
+
+        private Run() {
+            rejections = new ConcurrentHashMap<>();
+            busyNanos = new long[STAGES.length];
+            threads = new Thread[STAGES.length];
+            accepted = 0;
+            revenueCents = 0;
+        }
+
+        /**
+         * @return The queue feeding the first stage
+         */
+        private BlockingQueue<Job> startStages() {
+            BlockingQueue<Job> first = new ArrayBlockingQueue<>(queueCapacity);
+            var in = first;
+            for (//noinspection ReassignedVariable
+                int i = 0; i < STAGES.length; i++) {
+                var stage = i;
+                var from = in;
+                var to = i + 1 < STAGES.length ? new ArrayBlockingQueue<Job>(queueCapacity) : null;
+                threads[i] = new Thread(() -> runStage(stage, from, to), "ingest-" + STAGES[i]);
+                threads[i].setDaemon(true);
+                threads[i].start();
+                in = to;
+            }
+            return first;
+        }
+
+        private void runStage(int stage, BlockingQueue<Job> from, BlockingQueue<Job> to) {
+            try {
+                while (true) {
+                    var job = from.take();
+                    if (job == END) {
+                        if (to != null)
+                            to.put(END);
+                        return;
+                    }
+
+                    var start = System.nanoTime();
+                    boolean passed;
+                    try {
+                        passed = switch (stage) {
+                            case 0 -> parse(this, job);
+                            case 1 -> validate(this, job);
+                            case 2 -> price(job);
+                            case 3 -> persist(this, job);
+                            default -> throw new IllegalStateException("This case should not be reachable.");
+                        };
+                    } catch (RuntimeException e) {
+                        System.err.println("Error: Could not " + STAGES[stage] + " the order on line " + job.line + "!");
+                        e.printStackTrace(System.err);
+                        passed = reject(job, FAILED);
+                    }
+                    busyNanos[stage] += System.nanoTime() - start;
+
+                    if (passed && to != null)
+                        to.put(job);
+                }
+            } catch (InterruptedException e) {
+                // The run is being abandoned.
+            }
+        }
+
+        /**
+         * Sends the end of the orders down the stages, and waits for them to finish.
+         * If this thread is interrupted, the stages are stopped instead, but still waited for,
+         * so their tallies can be read safely either way.
+         *
+         * @return Whether every order sent was seen through the stages
+         */
+        private boolean finish(BlockingQueue<Job> lines) {
+            var interrupted = false;
+            try {
+                lines.put(END);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            for (var thread : threads)
+                while (thread.isAlive()) {
+                    if (interrupted)
+                        thread.interrupt();
+                    try {
+                        thread.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            return !interrupted;
+        }
+
+        /**
+         * Rejects an order, giving back any stock it holds.
+         *
+         * @return {@code false}, so the order goes no further
+         */
+        @SuppressWarnings({"SameReturnValue", "BooleanMethodNameMustStartWithQuestion"})
+        private boolean reject(Job job, String reason) {
+            if (job.order != null)
+                job.order.cancel();
+            rejections.merge(reason, new Rejection(1, job.line),
+                (a, b) -> new Rejection(a.count() + b.count(), Math.min(a.firstLine(), b.firstLine())));
+            return false;
+        }
+
+        private Map<String, Duration> busyTimes() {
+            var times = new LinkedHashMap<String, Duration>();
+            for (//noinspection ReassignedVariable
+                int i = 0; i < STAGES.length; i++)
+                times.put(STAGES[i], Duration.ofNanos(busyNanos[i]));
+            return Collections.unmodifiableMap(times);
+        }
+    }
+
+    /**
+     * An order on its way through the stages.
+     */
+    private static final class Job {
+        private final long line;
+        private final String text;
+        private Map<String, Object> request;
+        private Order order;
+        private Receipt receipt;
+        private long totalCents;
+
+        private Job(long line, String text) {
+            this.line = line;
+            this.text = text;
+        }
+    }
+
+    /**
+     * The orders rejected for one reason.
+     *
+     * @param count     The number of orders
+     * @param firstLine The line of the first of them in the file
+     */
+    public record Rejection(long count, long firstLine) {
+    }
+
+    /**
+     * How a run went.
+     *
+     * @param read         The number of orders read
+     * @param complete     Whether every order was read and seen through, rather than the run stopping early
+     * @param accepted     The number of orders checked out
+     * @param revenueCents The total of the orders checked out, in cents
+     * @param rejections   The orders rejected, by reason
+     * @param elapsed      How long the run took
+     * @param busyTimes    How long each stage spent working, rather than waiting, by stage
+     */
+    public record Report(long read,
+                         boolean complete,
+                         long accepted,
+                         long revenueCents,
+                         Map<String, Rejection> rejections,
+                         Duration elapsed,
+                         Map<String, Duration> busyTimes) {
+        /**
+         * @return The number of orders rejected
+         */
+        public long rejected() {
+            return rejections.values().stream().mapToLong(Rejection::count).sum();
+        }
+
+        /**
+         * @return The number of orders read each second
+         */
+        public double ordersPerSecond() {
+            return elapsed.isZero() ? 0 : read * NANOS_PER_SECOND / elapsed.toNanos();
+        }
+
+        /**
+         * @param out The stream to print this report to
+         */
+        @SuppressWarnings("FeatureEnvy")
+        public void printTo(PrintStream out) {
+            out.printf("Read %d orders in %.3fs (%.0f orders/s)%n",
+                read, elapsed.toNanos() / NANOS_PER_SECOND, ordersPerSecond());
+            if (!complete)
+                out.println("Stopped early; only the orders read before then were taken");
+            out.printf("Accepted %d orders, totalling $%s%n", accepted, Money.format(revenueCents));
+            out.printf("Rejected %d orders%n", rejected());
+            rejections.entrySet().stream()
+                .sorted(Map.Entry.<String, Rejection>comparingByValue(
+                    Comparator.comparingLong(Rejection::count)).reversed())
+                .forEach(entry -> out.printf("  %-24s%8d  (first on line %d)%n",
+                    entry.getKey(), entry.getValue().count(), entry.getValue().firstLine()));
+            out.print("Busy time by stage:");
+            busyTimes.forEach((stage, time) -> out.printf(" %s %.3fs", stage, time.toNanos() / NANOS_PER_SECOND));
+            out.println();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.app;
+
+import com.pluralsight.io.*;
+import com.pluralsight.kitchen.*;
+import com.pluralsight.orders.*;
+
+import java.util.concurrent.*;
+
+/**
+ * The steps of checking out an order, shared by every way of taking one.
+ */
+final class Checkout {
+    private final AsyncReceiptWriter receipts;
+    private final boolean waitForReceipts;
+    private final Kitchen kitchen;
+
+    /**
+     * @param receipts        The writer to record sales with
+     * @param waitForReceipts Whether checkout waits until the receipt is safely on disk
+     * @param kitchen         The kitchen to send sold orders to
+     */
+    Checkout(AsyncReceiptWriter receipts, boolean waitForReceipts, Kitchen kitchen) {
+        this.receipts = receipts;
+        this.waitForReceipts = waitForReceipts;
+        this.kitchen = kitchen;
+    }
+
+    /**
+     * Consumes a sale's stock, records its receipt and sends it to the kitchen.
+     * The receipt is only recorded once the stock is consumed, so there is never a receipt for a sale which didn't happen.
+     * Once the stock is consumed the sale is final, even if its receipt then can't be recorded;
+     * checking the order out again would consume its stock a second time.
+     *
+     * @param order   The order being sold
+     * @param receipt The receipt for the sale
+     * @return How it went
+     */
+    Result checkOut(Order order, Receipt receipt) {
+        if (!order.getReservation().renew())
+            return Result.UNAVAILABLE;
+        if (!receipt.processSale())
+            return Result.FAILED;
+
+        CompletableFuture<Long> recorded;
+        try {
+            recorded = receipts.submit(receipt);
+        } catch (IllegalStateException e) {
+            recorded = CompletableFuture.failedFuture(e);
+        }
+        if (waitForReceipts) {
+            try {
+                recorded.join();
+            } catch (CompletionException e) {
+                // The stock is already gone, so keep the receipt where someone can record it by hand.
+                System.err.println("Error: Could not record receipt!");
+                System.err.println(receipt);
+                e.printStackTrace(System.err);
+                kitchen.submit(order);
+                return Result.UNRECORDED;
+            }
+        } else
+            recorded.exceptionally(e -> {
+                System.err.println("Error: Could not record receipt!");
+                System.err.println(receipt);
+                e.printStackTrace(System.err);
+                return null;
+            });
+
+        kitchen.submit(order);
+        return Result.DONE;
+    }
+
+    /**
+     * How a checkout went.
+     */
+    enum Result {
+        /**
+         * The sale was recorded, its stock consumed and the order sent to the kitchen.
+         */
+        DONE,
+        /**
+         * The reservation had expired and some of its stock has since been taken.
+         */
+        UNAVAILABLE,
+        /**
+         * The sale went through, its stock consumed and the order sent to the kitchen,
+         * but its receipt could not be recorded. The order must not be checked out again.
+         */
+        UNRECORDED,
+        /**
+         * The sale could not be completed, and nothing was consumed.
+         */
+        FAILED
+    }
+}
@@ -4,34 +4,221 @@
 
 package com.pluralsight.app;
 
+import com.pluralsight.analytics.*;
 import com.pluralsight.io.*;
+import com.pluralsight.kitchen.*;
 import com.pluralsight.orders.breads.*;
 import com.pluralsight.orders.drinks.*;
 import com.pluralsight.orders.extras.*;
 import com.pluralsight.orders.toppings.*;
+import com.pluralsight.promotions.*;
 
 import java.io.*;
+import java.time.*;
+import java.util.*;
+import java.util.function.*;
 
 /**
  * Holds the entry point for the application.
  */
 @SuppressWarnings("UtilityClass")
 public final class EntryPoint {
+    private static final String INVENTORY_MODE_PROPERTY = "inventory.mode";
+    private static final String JOURNAL_MODE = "journal";
+    private static final String WRITE_BEHIND_MODE = "write-behind";
+    private static final String MAPPED_MODE = "mapped";
+    private static final long JOURNAL_COMPACT_SIZE = 16 * 1024;
+    private static final Duration WRITE_BEHIND_INTERVAL = Duration.ofSeconds(5);
+    private static final int WRITE_BEHIND_THRESHOLD = 64;
+    private static final boolean WAIT_FOR_RECEIPTS = false;
+    private static final int REPORT_DAYS = 30;
+    private static final int DEFAULT_KIOSK_PORT = 7878;
+    private static final int DEFAULT_HTTP_PORT = 8080;
+    private static final String HTTP_NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+    private static final Map<Station, Integer> KITCHEN_STAFF = Map.of(
+        Station.BREAD, 1,
+        Station.TOASTER, 1,
+        Station.ASSEMBLY, 2,
+        Station.DRINKS, 1,
+        Station.EXTRAS, 1);
+    /**
+     * How much faster than real time the kitchen runs while ingesting, so an hour of orders is made in a second.
+     */
+    private static final double INGEST_KITCHEN_TIME_SCALE = 3600;
+
     /**
      * The entry point for the application.
+     * Given {@code --export-receipts}, writes every stored receipt out as its own text file instead of running the shop.
+     * Given {@code --archive-receipts}, moves receipt text files from past days into the archive instead.
+     * Given {@code --sales-report}, prints the sales of each item over the last {@value #REPORT_DAYS} days instead.
+     * Given {@code --serve}, optionally followed by a port, serves the shop to kiosks over TCP
+     * (on port {@value #DEFAULT_KIOSK_PORT} by default) instead of on the console.
+     * Given {@code --http}, optionally followed by a port, takes orders through {@link OrderingApi}
+     * (on port {@value #DEFAULT_HTTP_PORT} by default) until a line is entered on the console.
+     * Given {@code --ingest} followed by a file of JSON orders, one to a line, takes every order in it
+     * through {@link BatchIngest} and prints how it went instead.
+     * <p>
+     * Every sale is sent on to a simulated {@link Kitchen}.
+     * Whenever the shop stops, however it was run, how the kitchen did is printed as well.
+     * While ingesting, the kitchen runs {@value #INGEST_KITCHEN_TIME_SCALE} times faster than real time.
+     * <p>
+     * How stock changes are saved is chosen by the {@value #INVENTORY_MODE_PROPERTY} system property:
+     * {@value #JOURNAL_MODE} (the default) appends each change to a journal next to each catalog,
+     * {@value #WRITE_BEHIND_MODE} batches changes up and rewrites the catalogs every so often,
+     * and {@value #MAPPED_MODE} keeps stock counts in a {@link MappedInventoriedFile} next to each catalog,
+     * which is forced out to disk when the JVM shuts down.
      *
-     * @param args Unused
+     * @param args The command line arguments
      */
     public static void main(String[] args) {
+        var receiptDirectory = new File("receipts");
+        if (args.length > 0 && "--export-receipts".equals(args[0])) {
+            try (var receipts = new ReceiptStore(receiptDirectory)) {
+                System.out.println("Exported " + receipts.exportAll(receiptDirectory) + " receipts.");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        var archive = new ReceiptArchive(new File(receiptDirectory, "archive"));
+        if (args.length > 0 && "--archive-receipts".equals(args[0])) {
+            System.out.println("Archived " + archive.importTextFiles(receiptDirectory, LocalDate.now()) + " receipts.");
+            return;
+        }
+
         var toppings = new ToppingTypeFile(new File("toppings.csv"));
         var breads = new BreadTypeFile(new File("breads.csv"));
         var drinks = new DrinkTypeFile(new File("drinks.csv"));
         var extras = new ExtraTypeFile(new File("extras.csv"));
 
+        var inventoryMode = System.getProperty(INVENTORY_MODE_PROPERTY, JOURNAL_MODE);
+        var stores = new ArrayList<MappedInventoriedFile<?>>();
+        for (var file : new BaseInventoriedFile<?>[]{toppings, breads, drinks, extras})
+            switch (inventoryMode) {
+                case JOURNAL_MODE -> file.enableJournal(JOURNAL_COMPACT_SIZE);
+                case WRITE_BEHIND_MODE -> file.enableWriteBehind(WRITE_BEHIND_INTERVAL, WRITE_BEHIND_THRESHOLD);
+                case MAPPED_MODE -> stores.add(mapStock(file));
+                default -> {
+                    System.err.println("Error: Unknown inventory mode \"" + inventoryMode + "\"!");
+                    return;
+                }
+            }
+        if (!stores.isEmpty())
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> stores.forEach(MappedInventoriedFile::close),
+                "inventory-shutdown-force"));
+
+        if (args.length > 0 && "--sales-report".equals(args[0])) {
+            printSalesReport(receiptDirectory, archive, toppings, breads, drinks, extras);
+            return;
+        }
+
         var signatures = SignatureFile.load(new File("signatures.csv"), toppings, breads);
+        var promotions = PromotionFile.load(new File("promotions.csv"));
+
+        var reloader = new CatalogReloader();
+        reloader.watch(new File("toppings.csv"), toppings::reload);
+        reloader.watch(new File("breads.csv"), breads::reload);
+        reloader.watch(new File("drinks.csv"), drinks::reload);
+        reloader.watch(new File("extras.csv"), extras::reload);
+        reloader.watch(new File("signatures.csv"), signatures::reload);
+        reloader.watch(new File("promotions.csv"), promotions::reload);
+        reloader.start();
+
+        var ingesting = args.length > 0 && "--ingest".equals(args[0]);
+        try (var kitchen = new Kitchen(ServiceTimes.DEFAULT, KITCHEN_STAFF, true,
+            ingesting ? INGEST_KITCHEN_TIME_SCALE : 1);
+             var store = new ReceiptStore(receiptDirectory);
+             var receipts = new AsyncReceiptWriter(store)) {
+            rollClosedDays(archive, store);
+            if (ingesting) {
+                if (args.length < 2) {
+                    System.err.println("Error: --ingest needs a file of orders!");
+                    return;
+                }
+                var ingest = new BatchIngest(toppings, breads, drinks, extras, signatures, promotions,
+                    receipts, kitchen, BatchIngest.DEFAULT_QUEUE_CAPACITY);
+                ingest.run(new File(args[1])).printTo(System.out);
+                try {
+                    kitchen.drain();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                kitchen.report().printTo(System.out);
+                return;
+            }
+            if (args.length > 0 && "--http".equals(args[0])) {
+                var port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HTTP_PORT;
+                // Read once, when the first server is created; see OrderingApi.
+                if (System.getProperty(HTTP_NO_DELAY_PROPERTY) == null)
+                    System.setProperty(HTTP_NO_DELAY_PROPERTY, "true");
+                try (var api = new OrderingApi(toppings, breads, drinks, extras, signatures, promotions,
+                    receipts, WAIT_FOR_RECEIPTS, kitchen, port)) {
+                    api.start();
+                    System.out.println("Taking orders on port " + api.getPort() + ". Press Enter to stop.");
+                    //noinspection ResultOfMethodCallIgnored
+                    System.in.read();
+                }
+                kitchen.report().printTo(System.out);
+                return;
+            }
+
+            var shop = new SandwichShop(toppings, breads, drinks, extras, signatures, promotions,
+                receipts, WAIT_FOR_RECEIPTS, kitchen);
+
+            if (args.length > 0 && "--serve".equals(args[0])) {
+                var port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_KIOSK_PORT;
+                // Serving only ends when the JVM does, so the kitchen reports from a shutdown hook.
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> kitchen.report().printTo(System.out),
+                    "kitchen-report"));
+                try (var server = new KioskServer(shop, port)) {
+                    System.out.println("Serving kiosks on port " + server.getPort() + ".");
+                    server.serve();
+                }
+            } else {
+                shop.runShop(System.in, System.out);
+                kitchen.report().printTo(System.out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void rollClosedDays(ReceiptArchive archive, ReceiptStore store) {
+        try {
+            archive.rollClosedDays(store, LocalDate.now());
+        } catch (UncheckedIOException e) {
+            System.err.println("Error: Could not archive old receipts!");
+            e.printStackTrace(System.err);
+        }
+    }
+
+    private static <T extends BaseInventoried> MappedInventoriedFile<T> mapStock(BaseInventoriedFile<T> catalog) {
+        return new MappedInventoriedFile<>(catalog, new File(catalog.getFile().getPath() + ".stock"));
+    }
 
-        var shop = new SandwichShop(toppings, breads, drinks, extras, signatures);
+    @SuppressWarnings("FeatureEnvy")
+    private static void printSalesReport(File receiptDirectory, ReceiptArchive archive,
+                                         InventoriedFile<ToppingType> toppings, InventoriedFile<BreadType> breads,
+                                         InventoriedFile<DrinkType> drinks, InventoriedFile<ExtraType> extras) {
+        Function<String, String> categories = name -> toppings.findByName(name).map(ToppingType::getCategory)
+            .or(() -> breads.findByName(name).map(b -> "Bread"))
+            .or(() -> drinks.findByName(name).map(d -> "Drink"))
+            .or(() -> extras.findByName(name).map(e -> "Extra"))
+            .orElse(null);
+        var drinkSizes = Arrays.stream(DrinkSize.values()).map(DrinkSize::toString).toList();
 
-        shop.runShop(System.in, System.out);
+        try (var store = new ReceiptStore(receiptDirectory)) {
+            // Days in the archive are read only from it, so any of their receipts still in the store must go in first.
+            rollClosedDays(archive, store);
+            var analytics = new SalesAnalytics(store, archive, categories, drinkSizes);
+            var now = Instant.now();
+            var report = analytics.scan(now.minus(Duration.ofDays(REPORT_DAYS)), now, Duration.ofDays(1));
+            report.byItem().forEach((item, total) ->
+                System.out.printf("%-40s%8d%12s%n", item, total.units(), Money.format(total.revenueCents())));
+            var total = report.getTotal();
+            System.out.printf("%-40s%8d%12s%n", "Total", total.units(), Money.format(total.revenueCents()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
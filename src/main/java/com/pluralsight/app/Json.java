@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.app;
+
+import java.util.*;
+
+/**
+ * Just enough JSON for the ordering API.
+ * Objects are read into ordered maps, arrays into lists, and numbers into {@link Long}s, or {@link Double}s
+ * if they have a fraction or exponent.
+ * Writing accepts the same types, plus any other {@link Number}.
+ */
+@SuppressWarnings("UtilityClass")
+final class Json {
+    private static final int HEX_DIGITS = 4;
+    private static final int HEX_RADIX = 16;
+
+    private Json() {
+    }
+
+    /**
+     * @param value A map, list, string, number, boolean or {@code null}
+     * @return The value as JSON
+     * @throws IllegalArgumentException If the value, or something in it, can't be written as JSON
+     */
+    static String write(Object value) {
+        return write(new StringBuilder(), value).toString();
+    }
+
+    /**
+     * @param out   The buffer to append to
+     * @param value A map, list, string, number, boolean or {@code null}
+     * @return {@code out}
+     * @throws IllegalArgumentException If the value, or something in it, can't be written as JSON
+     */
+    static StringBuilder write(StringBuilder out, Object value) {
+        if (value == null)
+            out.append("null");
+        else if (value instanceof CharSequence text)
+            quote(out, text);
+        else if (value instanceof Boolean || value instanceof Long || value instanceof Integer)
+            out.append(value);
+        else if (value instanceof Number number) {
+            var d = number.doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d))
+                throw new IllegalArgumentException("JSON has no way to write " + d);
+            out.append(number);
+        } else if (value instanceof Map<?, ?> map) {
+            out.append('{');
+            var first = true;
+            for (var entry : map.entrySet()) {
+                if (!first)
+                    out.append(',');
+                first = false;
+                quote(out, String.valueOf(entry.getKey()));
+                out.append(':');
+                write(out, entry.getValue());
+            }
+            out.append('}');
+        } else if (value instanceof Collection<?> list) {
+            out.append('[');
+            var first = true;
+            for (var item : list) {
+                if (!first)
+                    out.append(',');
+                first = false;
+                write(out, item);
+            }
+            out.append(']');
+        } else
+            throw new IllegalArgumentException("Can't write a " + value.getClass().getSimpleName() + " as JSON");
+        return out;
+    }
+
+    private static void quote(StringBuilder out, CharSequence text) {
+        out.append('"');
+        for (//noinspection ReassignedVariable
+            int i = 0; i < text.length(); i++) {
+            var c = text.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < ' ')
+                        out.append("\\u%04x".formatted((int) c));
+                    else
+                        out.append(c);
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * @param text Some JSON
+     * @return The value it holds
+     * @throws IllegalArgumentException If the text is not valid JSON
+     */
+    static Object parse(String text) {
+        var parser = new Parser(text);
+        var value = parser.value();
+        parser.skipWhitespace();
+        if (parser.position != text.length())
+            throw parser.error("Unexpected text after the value");
+        return value;
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int position;
+
+        private Parser(String text) {
+            this.text = text;
+            position = 0;
+        }
+
+        private Object value() {
+            skipWhitespace();
+            if (position == text.length())
+                throw error("Expected a value");
+            return switch (text.charAt(position)) {
+                case '{' -> object();
+                case '[' -> array();
+                case '"' -> string();
+                case 't' -> literal("true", Boolean.TRUE);
+                case 'f' -> literal("false", Boolean.FALSE);
+                case 'n' -> literal("null", null);
+                default -> number();
+            };
+        }
+
+        private Map<String, Object> object() {
+            position++;
+            var map = new LinkedHashMap<String, Object>();
+            skipWhitespace();
+            if (consume('}'))
+                return map;
+            do {
+                skipWhitespace();
+                if (position == text.length() || text.charAt(position) != '"')
+                    throw error("Expected a key");
+                var key = string();
+                skipWhitespace();
+                if (!consume(':'))
+                    throw error("Expected ':'");
+                map.put(key, value());
+                skipWhitespace();
+            } while (consume(','));
+            if (!consume('}'))
+                throw error("Expected ',' or '}'");
+            return map;
+        }
+
+        private List<Object> array() {
+            position++;
+            var list = new ArrayList<>();
+            skipWhitespace();
+            if (consume(']'))
+                return list;
+            do {
+                list.add(value());
+                skipWhitespace();
+            } while (consume(','));
+            if (!consume(']'))
+                throw error("Expected ',' or ']'");
+            return list;
+        }
+
+        private String string() {
+            position++;
+            var out = new StringBuilder();
+            while (true) {
+                if (position == text.length())
+                    throw error("Unterminated string");
+                var c = text.charAt(position++);
+                if (c == '"')
+                    return out.toString();
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                if (position == text.length())
+                    throw error("Unterminated string");
+                var escaped = text.charAt(position++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> out.append(escaped);
+                    case 'b' -> out.append('\b');
+                    case 'f' -> out.append('\f');
+                    case 'n' -> out.append('\n');
+                    case 'r' -> out.append('\r');
+                    case 't' -> out.append('\t');
+                    case 'u' -> {
+                        if (position + HEX_DIGITS > text.length())
+                            throw error("Bad unicode escape");
+                        try {
+                            out.append((char) Integer.parseInt(text, position, position + HEX_DIGITS, HEX_RADIX));
+                        } catch (NumberFormatException e) {
+                            throw error("Bad unicode escape");
+                        }
+                        position += HEX_DIGITS;
+                    }
+                    default -> throw error("Bad escape '\\" + escaped + "'");
+                }
+            }
+        }
+
+        private Object literal(String word, Object value) {
+            if (!text.startsWith(word, position))
+                throw error("Expected a value");
+            position += word.length();
+            return value;
+        }
+
+        private Number number() {
+            var start = position;
+            var integral = true;
+            while (position < text.length()) {
+                var c = text.charAt(position);
+                if (c == '.' || c == 'e' || c == 'E')
+                    integral = false;
+                else if (!(c >= '0' && c <= '9' || c == '-' || c == '+'))
+                    break;
+                position++;
+            }
+            var number = text.substring(start, position);
+            try {
+                // Not a conditional expression, which would unbox both and always give a Double.
+                if (integral)
+                    return Long.parseLong(number);
+                return Double.parseDouble(number);
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("Expected a value");
+            }
+        }
+
+        private boolean consume(char c) {
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position)))
+                position++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " of JSON");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.app;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Serves the shop to kiosks over TCP.
+ * Each connection gets its own session of {@link SandwichShop#runShop(InputStream, PrintStream)} on its own thread,
+ * and every session shares the shop, and so its inventory, with the others.
+ */
+public final class KioskServer implements Closeable {
+    private final SandwichShop shop;
+    private final ServerSocket socket;
+    private final ExecutorService sessions;
+    private final Set<Socket> connections;
+    private final AtomicInteger sessionCount;
+    private volatile boolean closed;
+
+    /**
+     * Starts listening, but does not accept any kiosks until {@link #serve()} is called.
+     *
+     * @param shop The shop to serve
+     * @param port The port to listen on, or 0 to pick any free port
+     * @throws UncheckedIOException If the port could not be listened on
+     */
+    public KioskServer(SandwichShop shop, int port) {
+        this.shop = shop;
+        try {
+            socket = new ServerSocket(port);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not listen on port " + port, e);
+        }
+        var threadCount = new AtomicInteger();
+        sessions = Executors.newCachedThreadPool(r -> {
+            var thread = new Thread(r, "kiosk-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        connections = ConcurrentHashMap.newKeySet();
+        sessionCount = new AtomicInteger();
+        closed = false;
+    }
+
+    /**
+     * @return The port being listened on
+     */
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * @return The number of kiosks currently connected
+     */
+    public int getSessionCount() {
+        return sessionCount.get();
+    }
+
+    /**
+     * Accepts kiosks until the server is closed.
+     */
+    public void serve() {
+        while (!closed) {
+            Socket connection;
+            try {
+                connection = socket.accept();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Error: Could not accept kiosk connection!");
+                    e.printStackTrace(System.err);
+                }
+                continue;
+            }
+            connections.add(connection);
+            sessionCount.incrementAndGet();
+            try {
+                sessions.execute(() -> runSession(connection));
+            } catch (RejectedExecutionException e) {
+                // Closed while accepting.
+                end(connection);
+            }
+        }
+    }
+
+    private void runSession(Socket connection) {
+        try (var out = new PrintStream(new BufferedOutputStream(connection.getOutputStream()), true, StandardCharsets.UTF_8)) {
+            shop.runShop(connection.getInputStream(), out);
+        } catch (NoSuchElementException e) {
+            // The kiosk disconnected mid-session.
+        } catch (IOException | RuntimeException e) {
+            if (!closed) {
+                System.err.println("Error: Kiosk session ended unexpectedly!");
+                e.printStackTrace(System.err);
+            }
+        } finally {
+            end(connection);
+        }
+    }
+
+    private void end(Socket connection) {
+        if (!connections.remove(connection))
+            return;
+        sessionCount.decrementAndGet();
+        try {
+            connection.close();
+        } catch (IOException e) {
+            // Nothing more to do with it anyway.
+        }
+    }
+
+    /**
+     * Stops accepting kiosks, disconnects the ones still connected and waits for their sessions to end.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        socket.close();
+        for (var connection : connections)
+            connection.close();
+        sessions.shutdown();
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            sessions.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.app;
+
+import com.pluralsight.io.*;
+import com.pluralsight.orders.*;
+import com.pluralsight.orders.breads.*;
+import com.pluralsight.orders.drinks.*;
+import com.pluralsight.orders.extras.*;
+import com.pluralsight.orders.toppings.*;
+
+import java.util.*;
+
+/**
+ * Reads the items of an order from parsed {@link Json}, looking up what they name in the catalogs.
+ * A sandwich is {@code {"size", "bread" or "signature", "toasted", "toppings": [{"name", "extra"}]}},
+ * a drink is {@code {"name", "size"}} and an extra is {@code {"name"}}.
+ * Malformed items are reported with an {@link IllegalArgumentException},
+ * and names not in the catalogs with a {@link NoSuchElementException}.
+ */
+final class OrderReader {
+    private final InventoriedFile<ToppingType> toppings;
+    private final InventoriedFile<BreadType> breads;
+    private final InventoriedFile<DrinkType> drinks;
+    private final InventoriedFile<ExtraType> extras;
+    private final SignatureFile signatures;
+
+    /**
+     * @param toppings   The file for toppings
+     * @param breads     The file for breads
+     * @param drinks     The file for drinks
+     * @param extras     The file for extras
+     * @param signatures The file for signature sandwiches
+     */
+    OrderReader(InventoriedFile<ToppingType> toppings,
+                InventoriedFile<BreadType> breads,
+                InventoriedFile<DrinkType> drinks,
+                InventoriedFile<ExtraType> extras,
+                SignatureFile signatures) {
+        this.toppings = toppings;
+        this.breads = breads;
+        this.drinks = drinks;
+        this.extras = extras;
+        this.signatures = signatures;
+    }
+
+    /**
+     * @param request A sandwich
+     * @return The sandwich, not yet in any order
+     */
+    SandwichItem readSandwich(Map<String, Object> request) {
+        var size = parseSandwichSize(getString(request, "size"));
+        SandwichItem sandwich;
+        if (request.containsKey("signature")) {
+            var name = getString(request, "signature");
+            sandwich = signatures.getSignatures().stream()
+                .filter(signature -> signature.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new NoSuchElementException("No signature sandwich named \"" + name + "\""))
+                .getSandwich();
+            sandwich.setSize(size);
+        } else
+            sandwich = new SandwichItem(size, findItem(breads, getString(request, "bread"), "bread"));
+
+        if (request.get("toasted") instanceof Boolean toasted)
+            sandwich.setToasted(toasted);
+        else if (request.containsKey("toasted"))
+            throw new IllegalArgumentException("\"toasted\" must be true or false");
+
+        for (var topping : getObjects(request, "toppings"))
+            sandwich.addTopping(findItem(toppings, getString(topping, "name"), "topping"),
+                Boolean.TRUE.equals(topping.get("extra")));
+        return sandwich;
+    }
+
+    /**
+     * @param request A drink
+     * @return The type of drink
+     */
+    DrinkType readDrinkType(Map<String, Object> request) {
+        return findItem(drinks, getString(request, "name"), "drink");
+    }
+
+    /**
+     * @param request A drink
+     * @return The size of drink
+     */
+    static DrinkSize readDrinkSize(Map<String, Object> request) {
+        return parseDrinkSize(getString(request, "size"));
+    }
+
+    /**
+     * @param request An extra
+     * @return The type of extra
+     */
+    ExtraType readExtra(Map<String, Object> request) {
+        return findItem(extras, getString(request, "name"), "extra");
+    }
+
+    /**
+     * @param request An object which may hold a list of objects
+     * @param key     The name of the list
+     * @return The objects in the list, or none if there is no list
+     */
+    static List<Map<String, Object>> getObjects(Map<String, Object> request, String key) {
+        var value = request.getOrDefault(key, List.of());
+        if (!(value instanceof List<?> list))
+            throw new IllegalArgumentException("\"" + key + "\" must be a list");
+        for (var item : list)
+            if (!(item instanceof Map<?, ?>))
+                throw new IllegalArgumentException("Each of \"" + key + "\" must be an object");
+        @SuppressWarnings("unchecked")
+        var objects = (List<Map<String, Object>>) list;
+        return objects;
+    }
+
+    /**
+     * @param request An object
+     * @param key     The name of one of its fields
+     * @return The field, which must be a string
+     */
+    static String getString(Map<String, Object> request, String key) {
+        if (request.get(key) instanceof String value)
+            return value;
+        throw new IllegalArgumentException("\"" + key + "\" must be a string");
+    }
+
+    private static <T extends Inventoried> T findItem(InventoriedFile<T> file, String name, String kind) {
+        return file.findByName(name)
+            .orElseThrow(() -> new NoSuchElementException("No " + kind + " named \"" + name + "\""));
+    }
+
+    private static SandwichSize parseSandwichSize(String size) {
+        for (var value : SandwichSize.values()) {
+            var display = value.toString();
+            if (display.equals(size) || value.name().equalsIgnoreCase(size)
+                || display.substring(0, display.length() - 1).equals(size))
+                return value;
+        }
+        throw new IllegalArgumentException("Unknown sandwich size \"" + size + "\"");
+    }
+
+    private static DrinkSize parseDrinkSize(String size) {
+        for (var value : DrinkSize.values())
+            if (value.toString().equalsIgnoreCase(size) || value.name().equalsIgnoreCase(size))
+                return value;
+        throw new IllegalArgumentException("Unknown drink size \"" + size + "\"");
+    }
+}
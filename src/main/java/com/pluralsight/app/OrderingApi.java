@@ -0,0 +1,433 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.app;
+
+import com.pluralsight.io.*;
+import com.pluralsight.kitchen.*;
+import com.pluralsight.orders.*;
+import com.pluralsight.orders.breads.*;
+import com.pluralsight.orders.drinks.*;
+import com.pluralsight.orders.extras.*;
+import com.pluralsight.orders.toppings.*;
+import com.pluralsight.promotions.*;
+import com.sun.net.httpserver.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Takes orders over HTTP, with JSON in and out, for front ends which can't drive the console prompts.
+ * <ul>
+ *     <li>{@code GET /catalog} lists what is for sale.</li>
+ *     <li>{@code POST /orders} starts an order.</li>
+ *     <li>{@code GET /orders/{id}} shows an order, and {@code DELETE} cancels it.</li>
+ *     <li>{@code POST /orders/{id}/sandwiches}, {@code /drinks} and {@code /extras} add to an order,
+ *     and {@code DELETE} on any of them followed by {@code /{index}} removes from it.</li>
+ *     <li>{@code POST /orders/{id}/checkout} checks an order out, the same way the console does.
+ *     Once it succeeds the order is gone, and {@code "recorded"} says whether its receipt was saved.</li>
+ * </ul>
+ * Orders share the same inventory as every other way of taking orders,
+ * and an order left untouched for longer than its reservation lasts is cancelled.
+ * <p>
+ * The JDK server writes headers and body separately, so unless {@code sun.net.httpserver.nodelay} is set
+ * before the first server is created, every response waits tens of milliseconds for a delayed ACK.
+ */
+public final class OrderingApi implements Closeable {
+    private static final long SWEEP_INTERVAL_MILLIS = Duration.ofMinutes(1).toMillis();
+    private static final long IDLE_MILLIS = Order.DEFAULT_RESERVATION_TTL.toMillis();
+    private static final int OK = 200;
+    private static final int CREATED = 201;
+    private static final int BAD_REQUEST = 400;
+    private static final int NOT_FOUND = 404;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int CONFLICT = 409;
+    private static final int SERVER_ERROR = 500;
+
+    private final InventoriedFile<ToppingType> toppings;
+    private final InventoriedFile<BreadType> breads;
+    private final InventoriedFile<DrinkType> drinks;
+    private final InventoriedFile<ExtraType> extras;
+    private final SignatureFile signatures;
+    private final PromotionFile promotions;
+    private final OrderReader reader;
+    private final Checkout checkout;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final Map<String, Session> orders;
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Starts listening, but does not handle any requests until {@link #start()} is called.
+     *
+     * @param toppings        The file for toppings
+     * @param breads          The file for breads
+     * @param drinks          The file for drinks
+     * @param extras          The file for extras
+     * @param signatures      The file for signature sandwiches
+     * @param promotions      The file for promotions
+     * @param receipts        The writer to record sales with
+     * @param waitForReceipts Whether checkout waits until the receipt is safely on disk
+     * @param kitchen         The kitchen to send sold orders to
+     * @param port            The port to listen on, or 0 to pick any free port
+     * @throws UncheckedIOException If the port could not be listened on
+     */
+    @SuppressWarnings("ConstructorWithTooManyParameters")
+    public OrderingApi(InventoriedFile<ToppingType> toppings,
+                       InventoriedFile<BreadType> breads,
+                       InventoriedFile<DrinkType> drinks,
+                       InventoriedFile<ExtraType> extras,
+                       SignatureFile signatures,
+                       PromotionFile promotions,
+                       AsyncReceiptWriter receipts,
+                       boolean waitForReceipts,
+                       Kitchen kitchen,
+                       int port) {
+        this.toppings = toppings;
+        this.breads = breads;
+        this.drinks = drinks;
+        this.extras = extras;
+        this.signatures = signatures;
+        this.promotions = promotions;
+        reader = new OrderReader(toppings, breads, drinks, extras, signatures);
+        checkout = new Checkout(receipts, waitForReceipts, kitchen);
+        orders = new ConcurrentHashMap<>();
+
+        try {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not listen on port " + port, e);
+        }
+        var threadCount = new AtomicInteger();
+        handlers = Executors.newCachedThreadPool(r -> {
+            var thread = new Thread(r, "http-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlers);
+        server.createContext("/", this::handle);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "http-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts handling requests, and cancelling abandoned orders, in the background.
+     */
+    public void start() {
+        server.start();
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return The port being listened on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops handling requests, and cancels any orders which weren't checked out.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        sweeper.shutdownNow();
+        handlers.shutdown();
+        for (var session : orders.values())
+            synchronized (session) {
+                session.order.cancel();
+            }
+        orders.clear();
+    }
+
+    private void handle(HttpExchange exchange) {
+        try {
+            Response response;
+            try {
+                var path = Arrays.stream(exchange.getRequestURI().getPath().split("/"))
+                    .filter(segment -> !segment.isEmpty())
+                    .toList();
+                response = route(exchange, exchange.getRequestMethod(), path);
+            } catch (ApiException e) {
+                response = new Response(e.status, Map.of("error", e.getMessage()));
+            } catch (NoSuchElementException e) {
+                response = new Response(NOT_FOUND, Map.of("error", e.getMessage()));
+            } catch (IllegalArgumentException e) {
+                response = new Response(BAD_REQUEST, Map.of("error", e.getMessage()));
+            } catch (RuntimeException e) {
+                System.err.println("Error: Could not handle request!");
+                e.printStackTrace(System.err);
+                response = new Response(SERVER_ERROR, Map.of("error", "Something went wrong"));
+            }
+
+            var body = Json.write(response.body()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.status(), body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // The client went away.
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response route(HttpExchange exchange, String method, List<String> path) throws IOException {
+        if (path.size() == 1 && "catalog".equals(path.get(0))) {
+            requireMethod(method, "GET");
+            return new Response(OK, catalog());
+        }
+        if (path.isEmpty() || !"orders".equals(path.get(0)) || path.size() > 4)
+            throw new ApiException(NOT_FOUND, "No such resource");
+
+        if (path.size() == 1) {
+            requireMethod(method, "POST");
+            var session = new Session(UUID.randomUUID().toString(), new Order(), promotions);
+            orders.put(session.id, session);
+            synchronized (session) {
+                return new Response(CREATED, view(session));
+            }
+        }
+
+        var session = orders.get(path.get(1));
+        if (session == null)
+            throw new ApiException(NOT_FOUND, "No such order");
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (session) {
+            if (orders.get(session.id) != session)
+                throw new ApiException(NOT_FOUND, "No such order");
+            session.lastUsed = System.currentTimeMillis();
+            var order = session.order;
+
+            if (path.size() == 2)
+                return switch (method) {
+                    case "GET" -> new Response(OK, view(session));
+                    case "DELETE" -> {
+                        order.cancel();
+                        orders.remove(session.id);
+                        yield new Response(OK, Map.of("cancelled", true));
+                    }
+                    default -> throw new ApiException(METHOD_NOT_ALLOWED, "Use GET or DELETE");
+                };
+
+            var part = path.get(2);
+            if (path.size() == 4) {
+                requireMethod(method, "DELETE");
+                var index = parseIndex(path.get(3));
+                switch (part) {
+                    case "sandwiches" -> order.removeSandwich(checkIndex(index, order.getSandwiches().size()));
+                    case "drinks" -> {
+                        var drink = order.getDrinks().get(checkIndex(index, order.getDrinks().size()));
+                        order.removeDrink(drink.getType(), drink.getSize());
+                    }
+                    case "extras" -> order.removeExtra(order.getExtras().get(checkIndex(index, order.getExtras().size())));
+                    default -> throw new ApiException(NOT_FOUND, "No such resource");
+                }
+                return new Response(OK, view(session));
+            }
+
+            requireMethod(method, "POST");
+            var request = readObject(exchange);
+            switch (part) {
+                case "sandwiches" -> {
+                    if (!order.addSandwich(reader.readSandwich(request)))
+                        throw new ApiException(CONFLICT, "Not enough in stock for that sandwich");
+                }
+                case "drinks" -> {
+                    if (!order.addDrink(reader.readDrinkType(request), OrderReader.readDrinkSize(request)))
+                        throw new ApiException(CONFLICT, "Not enough in stock for that drink");
+                }
+                case "extras" -> {
+                    if (!order.addExtra(reader.readExtra(request)))
+                        throw new ApiException(CONFLICT, "Not enough in stock for that extra");
+                }
+                case "checkout" -> {
+                    return checkOut(session);
+                }
+                default -> throw new ApiException(NOT_FOUND, "No such resource");
+            }
+            return new Response(CREATED, view(session));
+        }
+    }
+
+    private Response checkOut(Session session) {
+        if (session.order.getTotalCents() == 0)
+            throw new ApiException(BAD_REQUEST, "There's nothing to check out");
+        var total = session.promoted.getTotalCents();
+        var text = session.receipt.toString();
+        var result = checkout.checkOut(session.order, session.receipt);
+        return switch (result) {
+            // Once sold, the order is final even if its receipt wasn't recorded, so it can't be sold twice.
+            case DONE, UNRECORDED -> {
+                orders.remove(session.id);
+                var sale = new LinkedHashMap<String, Object>();
+                sale.put("totalCents", total);
+                sale.put("receipt", text);
+                sale.put("recorded", result == Checkout.Result.DONE);
+                yield new Response(OK, sale);
+            }
+            case UNAVAILABLE -> throw new ApiException(CONFLICT, "Some items in the order are no longer available");
+            case FAILED -> throw new ApiException(SERVER_ERROR, "There was an error processing the order");
+        };
+    }
+
+    /**
+     * Cancels orders nobody has touched in a while.
+     */
+    private void sweep() {
+        var now = System.currentTimeMillis();
+        try {
+            for (var session : orders.values())
+                synchronized (session) {
+                    if (now - session.lastUsed > IDLE_MILLIS && orders.remove(session.id, session))
+                        session.order.cancel();
+                }
+        } catch (RuntimeException e) {
+            // Thrown out of a scheduled task, this would stop every later sweep.
+            System.err.println("Error: Could not cancel abandoned orders!");
+            e.printStackTrace(System.err);
+        }
+    }
+
+    private Map<String, Object> catalog() {
+        var catalog = new LinkedHashMap<String, Object>();
+        catalog.put("sizes", Arrays.stream(SandwichSize.values()).map(SandwichSize::toString).toList());
+        catalog.put("breads", breads.getItems().stream().map(BreadType::getName).toList());
+        catalog.put("toppings", toppings.getItems().stream().map(type -> {
+            var prices = new LinkedHashMap<String, Object>();
+            var extraPrices = new LinkedHashMap<String, Object>();
+            for (var size : SandwichSize.values()) {
+                prices.put(size.toString(), type.getPriceCents(size));
+                extraPrices.put(size.toString(), type.getExtraPriceCents(size));
+            }
+            var topping = new LinkedHashMap<String, Object>();
+            topping.put("name", type.getName());
+            topping.put("category", type.getCategory());
+            topping.put("priceCents", prices);
+            topping.put("extraPriceCents", extraPrices);
+            return topping;
+        }).toList());
+        catalog.put("drinks", drinks.getItems().stream().map(type -> {
+            var prices = new LinkedHashMap<String, Object>();
+            for (var size : DrinkSize.values())
+                prices.put(size.toString(), type.getPriceCents(size));
+            var drink = new LinkedHashMap<String, Object>();
+            drink.put("name", type.getName());
+            drink.put("priceCents", prices);
+            return drink;
+        }).toList());
+        catalog.put("extras", extras.getItems().stream()
+            .map(type -> Map.of("name", type.getName(), "priceCents", type.getPriceCents()))
+            .toList());
+        catalog.put("signatures", signatures.getSignatures().stream()
+            .filter(signature -> signature.getSandwich().getToppings().stream()
+                .allMatch(topping -> topping.getType().isInStock()))
+            .map(SignatureSandwich::getName)
+            .toList());
+        return catalog;
+    }
+
+    private static Map<String, Object> view(Session session) {
+        var order = session.order;
+        var view = new LinkedHashMap<String, Object>();
+        view.put("id", session.id);
+        view.put("sandwiches", order.getSandwiches().stream().map(sandwich -> {
+            var item = new LinkedHashMap<String, Object>();
+            item.put("size", sandwich.getSize().toString());
+            item.put("bread", sandwich.getBread().getName());
+            item.put("toasted", sandwich.isToasted());
+            item.put("toppings", sandwich.getToppings().stream()
+                .map(topping -> Map.of("name", topping.getType().getName(), "extra", topping.isExtra()))
+                .toList());
+            item.put("totalCents", sandwich.getTotalCents());
+            return item;
+        }).toList());
+        view.put("drinks", order.getDrinks().stream()
+            .map(drink -> Map.of("name", drink.getType().getName(), "size", drink.getSize().toString(),
+                "priceCents", drink.getType().getPriceCents(drink.getSize())))
+            .toList());
+        view.put("extras", order.getExtras().stream()
+            .map(extra -> Map.of("name", extra.getName(), "priceCents", extra.getPriceCents()))
+            .toList());
+        view.put("discounts", session.promoted.getDiscounts().stream()
+            .map(discount -> Map.of("name", discount.getName(), "amountCents", -discount.getPriceCents()))
+            .toList());
+        view.put("totalCents", session.promoted.getTotalCents());
+        view.put("receipt", session.receipt.toString());
+        return view;
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!expected.equals(method))
+            throw new ApiException(METHOD_NOT_ALLOWED, "Use " + expected);
+    }
+
+    private static Map<String, Object> readObject(HttpExchange exchange) throws IOException {
+        String body;
+        try (var in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (body.isBlank())
+            return Map.of();
+        if (!(Json.parse(body) instanceof Map<?, ?> map))
+            throw new IllegalArgumentException("The request body must be a JSON object");
+        @SuppressWarnings("unchecked")
+        var object = (Map<String, Object>) map;
+        return object;
+    }
+
+    private static int parseIndex(String index) {
+        try {
+            return Integer.parseInt(index);
+        } catch (NumberFormatException e) {
+            throw new ApiException(NOT_FOUND, "No such resource");
+        }
+    }
+
+    private static int checkIndex(int index, int size) {
+        if (index < 0 || index >= size)
+            throw new ApiException(NOT_FOUND, "No item at index " + index);
+        return index;
+    }
+
+    private record Response(int status, Object body) {
+    }
+
+    private static final class Session {
+        private final String id;
+        private final Order order;
+        private final PromotedOrder promoted;
+        private final Receipt receipt;
+        private long lastUsed;
+
+        private Session(String id, Order order, PromotionFile promotions) {
+            this.id = id;
+            this.order = order;
+            promoted = promotions.applyTo(order);
+            receipt = new Receipt(promoted, order.getReservation());
+            lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    private static final class ApiException extends RuntimeException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        private ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
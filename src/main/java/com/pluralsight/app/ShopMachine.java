@@ -0,0 +1,813 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.app;
+
+import com.pluralsight.app.ShopState.*;
+import com.pluralsight.io.*;
+import com.pluralsight.orders.*;
+import com.pluralsight.orders.breads.*;
+import com.pluralsight.orders.drinks.*;
+import com.pluralsight.orders.extras.*;
+import com.pluralsight.orders.toppings.*;
+import com.pluralsight.promotions.*;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * The menus of the shop, as a state machine.
+ * Each piece of input, a single word as the console would read it, moves a {@link ShopState} to its next screen
+ * and appends whatever the customer should see next to an output buffer.
+ * Nothing here blocks waiting for input, so one thread can drive any number of customers,
+ * and a customer's state can be saved mid-order and restored later, even in another process.
+ * <p>
+ * The machine itself holds nothing about any one customer, so it may be shared between threads.
+ */
+@SuppressWarnings({"ObjectAllocationInLoop", "OverlyComplexClass", "ClassWithTooManyMethods"})
+public final class ShopMachine {
+    private static final String NL = System.lineSeparator();
+    private static final SignatureSandwich BUILD_YOUR_OWN = new SignatureSandwich(null, "Build your own");
+    private static final List<SandwichSize> SANDWICH_SIZES = List.of(SandwichSize.values());
+    private static final List<DrinkSize> DRINK_SIZES = List.of(DrinkSize.values());
+    private static final int NOT_A_NUMBER = Integer.MIN_VALUE;
+    private static final int MAX_DIGITS = 9;
+    private static final String MAIN_MENU = """
+        1 - New Order
+        2 - Exit""";
+    private static final String ORDER_MENU = """
+        -- CUSTOMIZING AN ORDER --
+
+        1 - Add Sandwich
+        2 - Add Drink
+        3 - Add Extra
+        4 - View Cart
+        5 - Cancel Order""";
+    private static final String CART_MENU = """
+        1 - Modify Sandwich
+        2 - Remove Sandwich
+        3 - Remove Drink
+        4 - Remove Extra
+        5 - Check Out
+        6 - Exit Cart View""";
+    private static final String EDITOR_MENU = """
+        1 - Toast
+        2 - Add Toppings
+        3 - Remove Toppings
+        4 - Change Bread
+        5 - Change Size
+        6 - Done""";
+
+    private final InventoriedFile<ToppingType> toppings;
+    private final InventoriedFile<BreadType> breads;
+    private final InventoriedFile<DrinkType> drinks;
+    private final InventoriedFile<ExtraType> extras;
+    private final SignatureFile signatures;
+    private final PromotionFile promotions;
+    private final Checkout checkout;
+
+    /**
+     * @param toppings   The file for toppings
+     * @param breads     The file for breads
+     * @param drinks     The file for drinks
+     * @param extras     The file for extras
+     * @param signatures The file for signature sandwiches
+     * @param promotions The file for promotions
+     * @param checkout   How to check orders out
+     */
+    @SuppressWarnings("ConstructorWithTooManyParameters")
+    ShopMachine(InventoriedFile<ToppingType> toppings,
+                InventoriedFile<BreadType> breads,
+                InventoriedFile<DrinkType> drinks,
+                InventoriedFile<ExtraType> extras,
+                SignatureFile signatures,
+                PromotionFile promotions,
+                Checkout checkout) {
+        this.toppings = toppings;
+        this.breads = breads;
+        this.drinks = drinks;
+        this.extras = extras;
+        this.signatures = signatures;
+        this.promotions = promotions;
+        this.checkout = checkout;
+    }
+
+    /**
+     * Starts a new customer at the main menu.
+     *
+     * @param out The buffer to append the first screen to
+     * @return The new customer's state
+     */
+    public ShopState start(StringBuilder out) {
+        var state = new ShopState();
+        show(state, Screen.MAIN, out);
+        return state;
+    }
+
+    /**
+     * Moves a customer along by one piece of input.
+     *
+     * @param state The customer's state, which is updated in place
+     * @param input A single word of input
+     * @param out   The buffer to append the customer's next screen to
+     * @throws IllegalStateException If the customer has already left
+     */
+    @SuppressWarnings({"OverlyComplexMethod", "OverlyLongMethod"})
+    public void accept(ShopState state, String input, StringBuilder out) {
+        switch (state.screen) {
+            case MAIN -> acceptMain(state, input, out);
+            case ORDER -> acceptOrder(state, input, out);
+            case SANDWICH_SIZE -> {
+                if (readChoice(state, input, out) instanceof SandwichSize size) {
+                    state.size = size;
+                    show(state, Screen.SIGNATURE, out);
+                }
+            }
+            case SIGNATURE -> acceptSignature(state, input, out);
+            case SANDWICH_BREAD -> {
+                if (readChoice(state, input, out) instanceof BreadType bread)
+                    edit(state, new SandwichItem(state.size, bread), -1, out);
+            }
+            case DRINK_TYPE -> {
+                var choice = readChoice(state, input, out);
+                if (choice instanceof DrinkType drink) {
+                    state.drink = drink;
+                    show(state, Screen.DRINK_SIZE, out);
+                } else if (choice == Choice.CANCEL)
+                    show(state, Screen.ORDER, out);
+            }
+            case DRINK_SIZE -> {
+                if (readChoice(state, input, out) instanceof DrinkSize size) {
+                    if (!state.order.addDrink(state.drink, size))
+                        line(out, "Sorry, we don't have enough of that drink in stock right now.");
+                    show(state, Screen.ORDER, out);
+                }
+            }
+            case EXTRA -> {
+                var choice = readChoice(state, input, out);
+                if (choice instanceof ExtraType extra && !state.order.addExtra(extra))
+                    line(out, "Sorry, that item just went out of stock.");
+                if (choice != Choice.INVALID)
+                    show(state, Screen.ORDER, out);
+            }
+            case CONFIRM_CANCEL -> {
+                var answer = readYesNo(input, false, out);
+                if (answer == Boolean.TRUE) {
+                    state.order.cancel();
+                    endOrder(state, out);
+                } else if (answer != null)
+                    show(state, Screen.ORDER, out);
+            }
+            case CART -> acceptCart(state, input, out);
+            case MODIFY_SANDWICH -> {
+                var choice = readChoice(state, input, out);
+                if (choice instanceof Integer number)
+                    edit(state, state.order.getSandwiches().get(number - 1), number - 1, out);
+                else if (choice == Choice.CANCEL)
+                    show(state, Screen.CART, out);
+            }
+            case REMOVE_SANDWICH -> {
+                var choice = readChoice(state, input, out);
+                if (choice instanceof Integer number)
+                    state.order.removeSandwich(number - 1);
+                if (choice != Choice.INVALID)
+                    show(state, Screen.CART, out);
+            }
+            case REMOVE_DRINK -> {
+                var choice = readChoice(state, input, out);
+                if (choice instanceof Order.DrinkView drink)
+                    state.order.removeDrink(drink.getType(), drink.getSize());
+                if (choice != Choice.INVALID)
+                    show(state, Screen.CART, out);
+            }
+            case REMOVE_EXTRA -> {
+                var choice = readChoice(state, input, out);
+                if (choice instanceof ExtraType extra)
+                    state.order.removeExtra(extra);
+                if (choice != Choice.INVALID)
+                    show(state, Screen.CART, out);
+            }
+            case CONFIRM_CHECKOUT -> acceptCheckOut(state, input, out);
+            case EDITOR -> acceptEditor(state, input, out);
+            case TOAST -> {
+                var answer = readYesNo(input, !state.sandwich.isToasted(), out);
+                if (answer != null) {
+                    state.sandwich.setToasted(answer);
+                    show(state, Screen.EDITOR, out);
+                }
+            }
+            case TOPPING_CATEGORY -> {
+                var choice = readChoice(state, input, out);
+                if (choice instanceof String category) {
+                    state.category = category;
+                    show(state, Screen.TOPPING, out);
+                } else if (choice == Choice.CANCEL)
+                    show(state, Screen.EDITOR, out);
+            }
+            case TOPPING -> {
+                var choice = readChoice(state, input, out);
+                if (choice instanceof ToppingType topping) {
+                    state.topping = topping;
+                    show(state, Screen.EXTRA_TOPPING, out);
+                } else if (choice == Choice.CANCEL)
+                    show(state, Screen.EDITOR, out);
+            }
+            case EXTRA_TOPPING -> {
+                var extra = readYesNo(input, null, out);
+                if (extra != null) {
+                    var sandwich = state.sandwich;
+                    if (!sandwich.addTopping(state.topping, false) || extra && !sandwich.addTopping(state.topping, true))
+                        line(out, "Sorry, we don't have enough of that topping in stock right now.");
+                    show(state, Screen.EDITOR, out);
+                }
+            }
+            case REMOVE_TOPPING -> {
+                var choice = readChoice(state, input, out);
+                if (choice instanceof SandwichItem.ToppingView topping)
+                    removeTopping(state.sandwich, topping);
+                if (choice != Choice.INVALID)
+                    show(state, Screen.EDITOR, out);
+            }
+            case CHANGE_BREAD -> {
+                if (readChoice(state, input, out) instanceof BreadType bread) {
+                    if (!state.sandwich.setBread(bread))
+                        line(out, "Sorry, we don't have enough of that bread in stock right now.");
+                    show(state, Screen.EDITOR, out);
+                }
+            }
+            case CHANGE_SIZE -> {
+                if (readChoice(state, input, out) instanceof SandwichSize size) {
+                    if (!state.sandwich.setSize(size))
+                        line(out, "Sorry, we don't have enough in stock for that size right now.");
+                    show(state, Screen.EDITOR, out);
+                }
+            }
+            case FINISHED -> throw new IllegalStateException("The customer has already left");
+            default -> throw new IllegalStateException("This case should not be reachable.");
+        }
+    }
+
+    /**
+     * Gives back the stock held by a customer who left without finishing, e.g. because they disconnected.
+     *
+     * @param state The customer's state
+     */
+    public void abandon(ShopState state) {
+        if (state.order != null)
+            state.order.cancel();
+        clearOrder(state);
+        state.screen = Screen.FINISHED;
+    }
+
+    /**
+     * Captures where a customer is, so they can carry on later, from this machine or another over the same catalogs.
+     * Saving does not give back the stock the order holds;
+     * a customer who is moving elsewhere should be {@linkplain #abandon(ShopState) abandoned} once saved.
+     *
+     * @param state The customer's state
+     * @return The state as JSON
+     */
+    @SuppressWarnings("FeatureEnvy")
+    public String save(ShopState state) {
+        var saved = new LinkedHashMap<String, Object>();
+        saved.put("screen", state.screen.name());
+        if (state.order != null) {
+            var order = new LinkedHashMap<String, Object>();
+            order.put("sandwiches", state.order.getSandwiches().stream().map(ShopMachine::saveSandwich).toList());
+            order.put("drinks", state.order.getDrinks().stream()
+                .map(drink -> Map.of("name", drink.getType().getName(), "size", drink.getSize().name()))
+                .toList());
+            order.put("extras", state.order.getExtras().stream().map(ExtraType::getName).toList());
+            saved.put("order", order);
+        }
+        if (state.sandwich != null) {
+            saved.put("sandwichIndex", state.sandwichIndex);
+            if (state.sandwichIndex < 0)
+                saved.put("sandwich", saveSandwich(state.sandwich));
+        }
+        if (state.size != null)
+            saved.put("size", state.size.name());
+        if (state.drink != null)
+            saved.put("drink", state.drink.getName());
+        if (state.category != null)
+            saved.put("category", state.category);
+        if (state.topping != null)
+            saved.put("topping", state.topping.getName());
+        return Json.write(saved);
+    }
+
+    /**
+     * Picks a customer back up where they were saved, and shows them the screen they were on.
+     * Their order holds its stock again, and anything which has since run out is left out of it.
+     *
+     * @param saved A state from {@link #save(ShopState)}
+     * @param out   The buffer to append the customer's screen to
+     * @return The restored state
+     * @throws IllegalArgumentException If the saved state is malformed, or names something not in the catalogs
+     */
+    @SuppressWarnings({"OverlyComplexMethod", "OverlyLongMethod", "FeatureEnvy"})
+    public ShopState restore(String saved, StringBuilder out) {
+        if (!(Json.parse(saved) instanceof Map<?, ?> map))
+            throw new IllegalArgumentException("Not a saved shop state");
+        var state = new ShopState();
+        var screen = Screen.valueOf(getText(map, "screen"));
+        var sandwichIndex = map.get("sandwichIndex") instanceof Long index ? index.intValue() : -1;
+        var lost = false;
+
+        if (map.get("order") instanceof Map<?, ?> saveOrder) {
+            var order = new Order();
+            state.order = order;
+            var sandwiches = getList(saveOrder, "sandwiches");
+            for (//noinspection ReassignedVariable
+                int i = 0; i < sandwiches.size(); i++) {
+                var sandwich = loadSandwich(sandwiches.get(i));
+                if (order.addSandwich(sandwich)) {
+                    if (i == sandwichIndex) {
+                        state.sandwich = sandwich;
+                        state.sandwichIndex = order.getSandwiches().size() - 1;
+                    }
+                } else
+                    lost = true;
+            }
+            for (var item : getList(saveOrder, "drinks")) {
+                if (!(item instanceof Map<?, ?> drink))
+                    throw new IllegalArgumentException("Each saved drink must be an object");
+                if (!order.addDrink(find(drinks, drink.get("name"), "drink"), DrinkSize.valueOf(getText(drink, "size"))))
+                    lost = true;
+            }
+            for (var extra : getList(saveOrder, "extras"))
+                if (!order.addExtra(find(extras, extra, "extra")))
+                    lost = true;
+            state.cart = new Receipt(promotions.applyTo(order), order.getReservation());
+        } else if (screen != Screen.MAIN && screen != Screen.FINISHED)
+            throw new IllegalArgumentException("Saved state on " + screen + " has no order");
+
+        if (sandwichIndex < 0 && map.containsKey("sandwich"))
+            state.sandwich = loadSandwich(map.get("sandwich"));
+        if (map.containsKey("size"))
+            state.size = SandwichSize.valueOf(getText(map, "size"));
+        if (map.containsKey("drink"))
+            state.drink = find(drinks, map.get("drink"), "drink");
+        if (map.containsKey("category"))
+            state.category = getText(map, "category");
+        if (map.containsKey("topping"))
+            state.topping = find(toppings, map.get("topping"), "topping");
+
+        var ready = switch (screen) {
+            case SIGNATURE, SANDWICH_BREAD -> state.size != null;
+            case DRINK_SIZE -> state.drink != null;
+            case EDITOR, TOAST, TOPPING_CATEGORY, REMOVE_TOPPING, CHANGE_BREAD, CHANGE_SIZE -> state.sandwich != null;
+            case TOPPING -> state.sandwich != null && state.category != null;
+            case EXTRA_TOPPING -> state.sandwich != null && state.topping != null;
+            default -> true;
+        };
+        if (!ready && sandwichIndex >= 0 && lost)
+            // The sandwich they were editing has run out, so send them back to the rest of the order.
+            screen = Screen.ORDER;
+        else if (!ready)
+            throw new IllegalArgumentException("Saved state on " + screen + " is missing what it was choosing");
+        if (state.sandwich != null)
+            state.sandwichReceipt = new Receipt(state.sandwich);
+
+        if (lost)
+            line(out, "Sorry, some items in your order are no longer available.");
+        show(state, screen, out);
+        return state;
+    }
+
+    private static Map<String, Object> saveSandwich(SandwichItem sandwich) {
+        var saved = new LinkedHashMap<String, Object>();
+        saved.put("size", sandwich.getSize().name());
+        saved.put("bread", sandwich.getBread().getName());
+        saved.put("toasted", sandwich.isToasted());
+        saved.put("toppings", sandwich.getToppings().stream()
+            .map(topping -> Map.of("name", topping.getType().getName(), "extra", topping.isExtra()))
+            .toList());
+        return saved;
+    }
+
+    private SandwichItem loadSandwich(Object saved) {
+        if (!(saved instanceof Map<?, ?> map))
+            throw new IllegalArgumentException("Each saved sandwich must be an object");
+        var sandwich = new SandwichItem(SandwichSize.valueOf(getText(map, "size")), find(breads, map.get("bread"), "bread"));
+        sandwich.setToasted(Boolean.TRUE.equals(map.get("toasted")));
+        for (var item : getList(map, "toppings")) {
+            if (!(item instanceof Map<?, ?> topping))
+                throw new IllegalArgumentException("Each saved topping must be an object");
+            // Not in an order yet, so this holds no stock and can't fail.
+            sandwich.addTopping(find(toppings, topping.get("name"), "topping"), Boolean.TRUE.equals(topping.get("extra")));
+        }
+        return sandwich;
+    }
+
+    private static String getText(Map<?, ?> map, String key) {
+        if (map.get(key) instanceof String value)
+            return value;
+        throw new IllegalArgumentException("Saved \"" + key + "\" must be a string");
+    }
+
+    private static List<?> getList(Map<?, ?> map, String key) {
+        var value = map.get(key);
+        if (value == null)
+            return List.of();
+        if (value instanceof List<?> list)
+            return list;
+        throw new IllegalArgumentException("Saved \"" + key + "\" must be a list");
+    }
+
+    private static <T extends Inventoried> T find(InventoriedFile<T> file, Object name, String kind) {
+        if (!(name instanceof String text))
+            throw new IllegalArgumentException("Saved " + kind + " must be a name");
+        return file.findByName(text)
+            .orElseThrow(() -> new IllegalArgumentException("No " + kind + " named \"" + text + "\""));
+    }
+
+    private void acceptMain(ShopState state, String input, StringBuilder out) {
+        switch (readCommand(input, 2, out)) {
+            case 1 -> {
+                state.order = new Order();
+                show(state, Screen.ORDER, out);
+            }
+            case 2 -> show(state, Screen.FINISHED, out);
+            default -> {
+            }
+        }
+    }
+
+    private void acceptOrder(ShopState state, String input, StringBuilder out) {
+        switch (readCommand(input, 5, out)) {
+            case 1 -> show(state, Screen.SANDWICH_SIZE, out);
+            case 2 -> show(state, Screen.DRINK_TYPE, out);
+            case 3 -> show(state, Screen.EXTRA, out);
+            case 4 -> {
+                state.cart = new Receipt(promotions.applyTo(state.order), state.order.getReservation());
+                show(state, Screen.CART, out);
+            }
+            case 5 -> {
+                var order = state.order;
+                if (order.getSandwiches().isEmpty() && order.getDrinks().isEmpty() && order.getExtras().isEmpty())
+                    endOrder(state, out);
+                else
+                    show(state, Screen.CONFIRM_CANCEL, out);
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void acceptSignature(ShopState state, String input, StringBuilder out) {
+        var choice = readChoice(state, input, out);
+        if (choice == BUILD_YOUR_OWN)
+            show(state, Screen.SANDWICH_BREAD, out);
+        else if (choice instanceof SignatureSandwich signature) {
+            var sandwich = signature.getSandwich();
+            // The copy holds no stock until it's added to the order, so resizing it can't fail here;
+            // whether there's enough is checked when the customer finishes the sandwich.
+            sandwich.setSize(state.size);
+            edit(state, sandwich, -1, out);
+        } else if (choice == Choice.CANCEL)
+            show(state, Screen.ORDER, out);
+    }
+
+    private void acceptCart(ShopState state, String input, StringBuilder out) {
+        switch (readCommand(input, 6, out)) {
+            case 1 -> show(state, Screen.MODIFY_SANDWICH, out);
+            case 2 -> show(state, Screen.REMOVE_SANDWICH, out);
+            case 3 -> show(state, Screen.REMOVE_DRINK, out);
+            case 4 -> show(state, Screen.REMOVE_EXTRA, out);
+            case 5 -> {
+                if (state.order.getTotalCents() == 0) {
+                    line(out, "There's nothing to check out!");
+                    show(state, Screen.CART, out);
+                } else
+                    show(state, Screen.CONFIRM_CHECKOUT, out);
+            }
+            case 6 -> {
+                state.cart = null;
+                show(state, Screen.ORDER, out);
+            }
+            default -> {
+            }
+        }
+    }
+
+    @SuppressWarnings("FeatureEnvy")
+    private void acceptCheckOut(ShopState state, String input, StringBuilder out) {
+        var answer = readYesNo(input, true, out);
+        if (answer == null)
+            return;
+        if (!answer) {
+            show(state, Screen.CART, out);
+            return;
+        }
+        switch (checkout.checkOut(state.order, state.cart)) {
+            case DONE -> {
+                line(out, "Thanks for eating with us!");
+                endOrder(state, out);
+            }
+            case UNRECORDED -> {
+                line(out, "Thanks for eating with us! We couldn't save your receipt, so please ask at the counter for a copy.");
+                endOrder(state, out);
+            }
+            case UNAVAILABLE -> {
+                line(out, "Sorry, some items in your order are no longer available. Please update your order.");
+                show(state, Screen.CART, out);
+            }
+            case FAILED -> {
+                line(out, "There was an error processing your order. Please try again later.");
+                show(state, Screen.CART, out);
+            }
+            default -> throw new IllegalStateException("This case should not be reachable.");
+        }
+    }
+
+    private void acceptEditor(ShopState state, String input, StringBuilder out) {
+        switch (readCommand(input, 6, out)) {
+            case 1 -> show(state, Screen.TOAST, out);
+            case 2 -> show(state, Screen.TOPPING_CATEGORY, out);
+            case 3 -> show(state, Screen.REMOVE_TOPPING, out);
+            case 4 -> show(state, Screen.CHANGE_BREAD, out);
+            case 5 -> show(state, Screen.CHANGE_SIZE, out);
+            case 6 -> {
+                // A new sandwich only holds stock once it's in the order; one from the order already does.
+                if (state.sandwichIndex < 0 && !state.order.addSandwich(state.sandwich))
+                    line(out, "Sorry, we don't have enough in stock for that sandwich right now.");
+                state.sandwich = null;
+                state.sandwichReceipt = null;
+                state.sandwichIndex = -1;
+                state.cart = null;
+                show(state, Screen.ORDER, out);
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void edit(ShopState state, SandwichItem sandwich, int index, StringBuilder out) {
+        state.sandwich = sandwich;
+        state.sandwichIndex = index;
+        state.sandwichReceipt = new Receipt(sandwich);
+        show(state, Screen.EDITOR, out);
+    }
+
+    private void endOrder(ShopState state, StringBuilder out) {
+        clearOrder(state);
+        show(state, Screen.MAIN, out);
+    }
+
+    private static void clearOrder(ShopState state) {
+        state.order = null;
+        state.cart = null;
+        state.sandwich = null;
+        state.sandwichReceipt = null;
+        state.sandwichIndex = -1;
+        state.size = null;
+        state.drink = null;
+        state.category = null;
+        state.topping = null;
+        state.options = List.of();
+    }
+
+    private static void removeTopping(SandwichItem sandwich, SandwichItem.ToppingView topping) {
+        sandwich.removeTopping(topping.getType(), topping.isExtra());
+        // Taking off a topping takes the extra serving of it too.
+        if (!topping.isExtra() && sandwich.getToppings().stream()
+            .anyMatch(tp -> tp.getType() == topping.getType() && tp.isExtra()))
+            sandwich.removeTopping(topping.getType(), true);
+    }
+
+    /**
+     * Moves to a screen and shows its prompt.
+     */
+    @SuppressWarnings({"OverlyComplexMethod", "OverlyLongMethod", "FeatureEnvy"})
+    private void show(ShopState state, Screen screen, StringBuilder out) {
+        state.screen = screen;
+        state.options = List.of();
+        state.cancellable = false;
+        switch (screen) {
+            case MAIN -> line(out, MAIN_MENU);
+            case ORDER -> {
+                // Whatever was being chosen on the way here is done with.
+                state.size = null;
+                state.drink = null;
+                line(out, ORDER_MENU);
+            }
+            case SANDWICH_SIZE, CHANGE_SIZE -> {
+                line(out, "Enter the sandwich size:");
+                list(state, out, SANDWICH_SIZES, false, Objects::toString);
+            }
+            case SIGNATURE -> {
+                line(out, "Choose a sandwich:");
+                list(state, out, Stream.concat(
+                    signatures.getSignatures().stream()
+                        .filter(ss -> ss.getSandwich().getToppings().stream()
+                            .allMatch(tv -> tv.getType().isInStock())),
+                    Stream.of(BUILD_YOUR_OWN)
+                ).toList(), true, SignatureSandwich::getName);
+            }
+            case SANDWICH_BREAD, CHANGE_BREAD -> {
+                line(out, "Enter the bread type:");
+                if (!list(state, out, breads.getItems(), false, BreadType::getName)) {
+                    line(out, "Sorry, we appear to be out of bread right now. Please try again later.");
+                    show(state, screen == Screen.CHANGE_BREAD ? Screen.EDITOR : Screen.ORDER, out);
+                }
+            }
+            case DRINK_TYPE -> {
+                line(out, "Enter the drink type:");
+                list(state, out, drinks.getItems(), true,
+                    dt -> "%s ($%sL, $%sM, $%sS)".formatted(
+                        dt.getName(),
+                        Money.format(dt.getPriceCents(DrinkSize.LARGE)),
+                        Money.format(dt.getPriceCents(DrinkSize.MEDIUM)),
+                        Money.format(dt.getPriceCents(DrinkSize.SMALL))
+                    ));
+            }
+            case DRINK_SIZE -> {
+                line(out, "Enter the size:");
+                list(state, out, DRINK_SIZES, false, Objects::toString);
+            }
+            case EXTRA -> {
+                line(out, "Enter the item:");
+                list(state, out, extras.getItems(), true,
+                    et -> "%s ($%s)".formatted(et.getName(), Money.format(et.getPriceCents())));
+            }
+            case CONFIRM_CANCEL -> line(out, "Are you sure you want to cancel the order?");
+            case CART -> {
+                if (state.cart == null)
+                    state.cart = new Receipt(promotions.applyTo(state.order), state.order.getReservation());
+                state.cart.renderTo(out).append(NL);
+                line(out, CART_MENU);
+            }
+            case MODIFY_SANDWICH, REMOVE_SANDWICH -> {
+                line(out, screen == Screen.MODIFY_SANDWICH ? "Modify which sandwich?" : "Remove which sandwich?");
+                list(state, out, IntStream.rangeClosed(1, state.order.getSandwiches().size()).boxed().toList(),
+                    true, Objects::toString);
+            }
+            case REMOVE_DRINK -> {
+                line(out, "Remove which drink?");
+                list(state, out, state.order.getDrinks(), true,
+                    dv -> "%s %s".formatted(dv.getSize(), dv.getType().getName()));
+            }
+            case REMOVE_EXTRA -> {
+                line(out, "Remove which extra?");
+                list(state, out, state.order.getExtras(), true, ExtraType::getName);
+            }
+            case CONFIRM_CHECKOUT -> {
+                Money.appendTo(out.append("Your total is: $"), state.cart.getPriceCents()).append(NL);
+                line(out, "Are you sure you want to make this purchase?");
+            }
+            case EDITOR -> {
+                state.size = null;
+                state.category = null;
+                state.topping = null;
+                line(out, "Editing your sandwich:");
+                state.sandwichReceipt.renderTo(out).append(NL);
+                line(out, EDITOR_MENU);
+            }
+            case TOAST -> line(out, "Would you like your sandwich toasted?");
+            case TOPPING_CATEGORY -> {
+                var onSandwich = onSandwich(state.sandwich);
+                line(out, "Choose a category:");
+                list(state, out, toppings.getCategories().stream()
+                    .filter(cat -> toppings.getAllItemsInCategory(cat).stream()
+                        .anyMatch(tp -> tp.isInStock() && !onSandwich.contains(tp)))
+                    .toList(), true, Objects::toString);
+            }
+            case TOPPING -> {
+                var onSandwich = onSandwich(state.sandwich);
+                var size = state.sandwich.getSize();
+                line(out, "Choose a topping:");
+                list(state, out, toppings.getAllItemsInCategory(state.category).stream()
+                    .filter(tp -> tp.isInStock() && !onSandwich.contains(tp))
+                    .toList(), true, tt -> formatTopping(tt, size));
+            }
+            case EXTRA_TOPPING -> line(out, "Would you like extra?");
+            case REMOVE_TOPPING -> {
+                line(out, "Which topping do you want to remove?");
+                list(state, out, state.sandwich.getToppings(), true,
+                    tv -> "%s%s".formatted(tv.isExtra() ? "Extra " : "", tv.getType().getName()));
+            }
+            case FINISHED -> line(out, "Thank you for coming!");
+            default -> throw new IllegalStateException("This case should not be reachable.");
+        }
+    }
+
+    private static Set<ToppingType> onSandwich(SandwichItem sandwich) {
+        return sandwich.getToppings().stream()
+            .map(SandwichItem.ToppingView::getType)
+            .collect(Collectors.toSet());
+    }
+
+    @SuppressWarnings("FeatureEnvy")
+    private static String formatTopping(ToppingType type, SandwichSize size) {
+        if (type.getPriceCents(size) == 0 && type.getExtraPriceCents(size) == 0)
+            return type.getName();
+        return "%s ($%s, $%s)".formatted(type.getName(),
+            Money.format(type.getPriceCents(size)), Money.format(type.getExtraPriceCents(size)));
+    }
+
+    /**
+     * Shows a numbered list of options, and remembers them so the answer picks what was shown.
+     *
+     * @return Whether there was anything to choose
+     */
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    private static <T> boolean list(ShopState state,
+                                    StringBuilder out,
+                                    List<? extends T> options,
+                                    boolean cancellable,
+                                    Function<? super T, ? extends CharSequence> displaySelector) {
+        state.options = options;
+        state.cancellable = cancellable;
+        if (options.isEmpty() && !cancellable) {
+            line(out, "Nothing to choose");
+            return false;
+        }
+        for (//noinspection ReassignedVariable
+            int i = 0; i < options.size(); i++)
+            out.append(i + 1).append(" - ").append(displaySelector.apply(options.get(i))).append(NL);
+        if (cancellable)
+            out.append(options.size() + 1).append(" - Cancel").append(NL);
+        return true;
+    }
+
+    /**
+     * @return The option chosen from the current list, {@link Choice#CANCEL} or {@link Choice#INVALID}
+     */
+    private static Object readChoice(ShopState state, String input, StringBuilder out) {
+        var options = state.options;
+        var choice = readCommand(input, options.size() + (state.cancellable ? 1 : 0), out);
+        if (choice == 0)
+            return Choice.INVALID;
+        if (choice > options.size())
+            return Choice.CANCEL;
+        return options.get(choice - 1);
+    }
+
+    /**
+     * @return The command chosen from 1 to {@code count}, or 0 if the input was not one of them
+     */
+    private static int readCommand(String input, int count, StringBuilder out) {
+        var choice = parseInt(input);
+        if (choice == NOT_A_NUMBER) {
+            unknown(out, input);
+            return 0;
+        }
+        if (choice < 1 || choice > count) {
+            unknown(out, Integer.toString(choice));
+            return 0;
+        }
+        return choice;
+    }
+
+    private static int parseInt(String input) {
+        var start = !input.isEmpty() && (input.charAt(0) == '-' || input.charAt(0) == '+') ? 1 : 0;
+        var length = input.length() - start;
+        if (length < 1 || length > MAX_DIGITS)
+            return NOT_A_NUMBER;
+        var value = 0;
+        for (//noinspection ReassignedVariable
+            int i = start; i < input.length(); i++) {
+            var c = input.charAt(i);
+            if (c < '0' || c > '9')
+                return NOT_A_NUMBER;
+            value = value * 10 + c - '0';
+        }
+        return input.charAt(0) == '-' ? -value : value;
+    }
+
+    /**
+     * @param defaultValue What anything but yes or no means, or {@code null} to insist on one of them
+     * @return The answer, or {@code null} if the input was not one
+     */
+    @SuppressWarnings("MethodWithMoreThanThreeNegations")
+    private static Boolean readYesNo(String input, Boolean defaultValue, StringBuilder out) {
+        var trimmed = input.trim();
+        var answer = trimmed.isEmpty() ? ' ' : Character.toLowerCase(trimmed.charAt(0));
+        if (defaultValue != null)
+            return answer == 'y' || answer != 'n' && defaultValue;
+        if (answer != 'y' && answer != 'n') {
+            unknown(out, input);
+            return null;
+        }
+        return answer == 'y';
+    }
+
+    private static void unknown(StringBuilder out, String input) {
+        out.append("Unknown option \"").append(input).append("\". Please try again.").append(NL);
+    }
+
+    private static void line(StringBuilder out, String text) {
+        out.append(text).append(NL);
+    }
+
+    /**
+     * Answers to a list which aren't one of its options.
+     */
+    private enum Choice {
+        CANCEL,
+        INVALID
+    }
+}
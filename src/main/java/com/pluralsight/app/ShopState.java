@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.app;
+
+import com.pluralsight.io.*;
+import com.pluralsight.orders.*;
+import com.pluralsight.orders.drinks.*;
+import com.pluralsight.orders.toppings.*;
+
+import java.util.*;
+
+/**
+ * Where one customer is in a {@link ShopMachine}: the screen they are looking at,
+ * the order they are building and whatever they have chosen so far on the way to the current prompt.
+ * A state belongs to one customer, and is not safe to use from more than one thread at once.
+ */
+@SuppressWarnings("PackageVisibleField")
+public final class ShopState {
+    Screen screen;
+    Order order;
+    Receipt cart;
+    SandwichItem sandwich;
+    int sandwichIndex;
+    Receipt sandwichReceipt;
+    SandwichSize size;
+    DrinkType drink;
+    String category;
+    ToppingType topping;
+    List<?> options;
+    boolean cancellable;
+
+    ShopState() {
+        screen = Screen.MAIN;
+        sandwichIndex = -1;
+        options = List.of();
+        cancellable = false;
+    }
+
+    /**
+     * @return The screen the customer is looking at
+     */
+    public Screen getScreen() {
+        return screen;
+    }
+
+    /**
+     * @return Whether the customer has left the shop, so no more input is expected
+     */
+    public boolean isFinished() {
+        return screen == Screen.FINISHED;
+    }
+
+    /**
+     * @return The order being built, if the customer is in the middle of one
+     */
+    public Optional<Order> getOrder() {
+        return Optional.ofNullable(order);
+    }
+
+    /**
+     * The screens a customer can be looking at.
+     * Each one is waiting for a single piece of input, except {@link #FINISHED}.
+     */
+    public enum Screen {
+        /**
+         * Start an order or leave.
+         */
+        MAIN,
+        /**
+         * Add to the order, view the cart or cancel.
+         */
+        ORDER,
+        /**
+         * Choose the size of a new sandwich.
+         */
+        SANDWICH_SIZE,
+        /**
+         * Choose a signature sandwich, or to build one.
+         */
+        SIGNATURE,
+        /**
+         * Choose the bread for a sandwich being built.
+         */
+        SANDWICH_BREAD,
+        /**
+         * Choose a drink.
+         */
+        DRINK_TYPE,
+        /**
+         * Choose the size of the chosen drink.
+         */
+        DRINK_SIZE,
+        /**
+         * Choose an extra.
+         */
+        EXTRA,
+        /**
+         * Confirm cancelling the order.
+         */
+        CONFIRM_CANCEL,
+        /**
+         * Look over the order, change it or check it out.
+         */
+        CART,
+        /**
+         * Choose a sandwich in the order to edit.
+         */
+        MODIFY_SANDWICH,
+        /**
+         * Choose a sandwich to remove from the order.
+         */
+        REMOVE_SANDWICH,
+        /**
+         * Choose a drink to remove from the order.
+         */
+        REMOVE_DRINK,
+        /**
+         * Choose an extra to remove from the order.
+         */
+        REMOVE_EXTRA,
+        /**
+         * Confirm the purchase.
+         */
+        CONFIRM_CHECKOUT,
+        /**
+         * Change a sandwich.
+         */
+        EDITOR,
+        /**
+         * Choose whether the sandwich is toasted.
+         */
+        TOAST,
+        /**
+         * Choose a category of toppings.
+         */
+        TOPPING_CATEGORY,
+        /**
+         * Choose a topping from the chosen category.
+         */
+        TOPPING,
+        /**
+         * Choose whether to have extra of the chosen topping.
+         */
+        EXTRA_TOPPING,
+        /**
+         * Choose a topping to remove.
+         */
+        REMOVE_TOPPING,
+        /**
+         * Choose new bread for the sandwich.
+         */
+        CHANGE_BREAD,
+        /**
+         * Choose a new size for the sandwich.
+         */
+        CHANGE_SIZE,
+        /**
+         * The customer has left.
+         */
+        FINISHED
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.io;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Writes receipts to a {@link ReceiptStore} in the background.
+ * Receipts queued while a write is in progress are written and synced to disk together.
+ * When the queue is full, {@link #submit(Receipt)} waits for room.
+ */
+public final class AsyncReceiptWriter implements Closeable {
+    /**
+     * The default number of receipts which may be waiting to be written.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final Pending SHUTDOWN = new Pending(new byte[0], null);
+
+    private final ReceiptStore store;
+    private final BlockingQueue<Pending> queue;
+    private final int capacity;
+    private final Thread thread;
+    // Submitting holds the read lock and closing the write lock, so nothing can be queued behind the shutdown marker.
+    private final ReadWriteLock closing;
+    private boolean closed;
+
+    /**
+     * @param store The store to write receipts to
+     */
+    public AsyncReceiptWriter(ReceiptStore store) {
+        this(store, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param store    The store to write receipts to
+     * @param capacity The number of receipts which may be waiting to be written
+     */
+    public AsyncReceiptWriter(ReceiptStore store, int capacity) {
+        this.store = store;
+        this.capacity = capacity;
+        queue = new ArrayBlockingQueue<>(capacity);
+        closing = new ReentrantReadWriteLock();
+        closed = false;
+        thread = new Thread(this::run, "receipt-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a receipt to be stored.
+     * The receipt is encoded right away, so later changes to the items on it are not recorded.
+     *
+     * @param receipt The receipt to store
+     * @return A future completed with the receipt's sequence id once it is safely on disk
+     * @throws IllegalStateException If the writer has been closed
+     */
+    public CompletableFuture<Long> submit(Receipt receipt) {
+        var pending = new Pending(receipt.encode(), new CompletableFuture<>());
+        closing.readLock().lock();
+        try {
+            if (closed)
+                throw new IllegalStateException("The receipt writer has been closed");
+            // The writer never takes the lock, so it keeps making room while this waits.
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future().completeExceptionally(e);
+        } finally {
+            closing.readLock().unlock();
+        }
+        return pending.future();
+    }
+
+    /**
+     * Stops accepting receipts, then waits for those already queued to be written.
+     */
+    @Override
+    public void close() {
+        closing.writeLock().lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+            queue.put(SHUTDOWN);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closing.writeLock().unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        var batch = new ArrayList<Pending>(capacity);
+        var encoded = new ArrayList<byte[]>(capacity);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+
+                var shutdown = batch.remove(SHUTDOWN);
+                if (!batch.isEmpty())
+                    write(batch, encoded);
+                batch.clear();
+                encoded.clear();
+                if (shutdown)
+                    return;
+            }
+        } catch (InterruptedException e) {
+            // The application is exiting.
+        } finally {
+            // Anything not written, if the writer stopped early, must not leave its submitter waiting forever.
+            queue.drainTo(batch);
+            batch.remove(SHUTDOWN);
+            var stopped = new IllegalStateException("The receipt writer stopped before writing this receipt");
+            for (var pending : batch)
+                pending.future().completeExceptionally(stopped);
+        }
+    }
+
+    private void write(List<Pending> batch, List<byte[]> encoded) {
+        for (var pending : batch)
+            encoded.add(pending.data());
+
+        long[] ids;
+        try {
+            ids = store.appendAllEncoded(encoded);
+        } catch (RuntimeException e) {
+            for (var pending : batch)
+                pending.future().completeExceptionally(e);
+            return;
+        }
+
+        for (//noinspection ReassignedVariable
+            int i = 0; i < ids.length; i++)
+            batch.get(i).future().complete(ids[i]);
+    }
+
+    @SuppressWarnings("ArrayRecordComponent")
+    private record Pending(byte[] data, CompletableFuture<Long> future) {
+    }
+}
@@ -4,37 +4,161 @@
 
 package com.pluralsight.io;
 
+import java.lang.invoke.*;
+
 /**
  * Base type for {@link Inventoried} items managed by a subclass of {@link BaseInventoriedFile}.
+ * The stock counter is lock-free, so items may be consumed from several threads at once.
+ * The amount available and the amount reserved are packed into a single word and always change together,
+ * so a snapshot can never see units moving between the two counted twice or not at all.
  */
 @SuppressWarnings("AbstractClassWithoutAbstractMethods")
 public abstract class BaseInventoried implements Inventoried {
+    private static final VarHandle STOCK;
+    private static final long RESERVED_MASK = 0xFFFF_FFFFL;
+
+    static {
+        try {
+            STOCK = MethodHandles.lookup().findVarHandle(BaseInventoried.class, "stock", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private BaseInventoriedFile<?> owner;
-    private int amount;
+    // The amount available in the high half, and the amount reserved in the low half.
+    @SuppressWarnings("FieldMayBeFinal")
+    private volatile long stock;
+    private int slot;
+    private int persisted;
 
     protected BaseInventoried() {
         //noinspection AssignmentToNull
         owner = null;
-        amount = 0;
+        stock = 0;
+        slot = -1;
+    }
+
+    @Override
+    public final void consume(int amount) {
+        owner.consume(this, amount, false);
+    }
+
+    @Override
+    public final boolean reserve(int amount) {
+        //noinspection ReassignedVariable
+        long current = stock;
+        while (amountOf(current) >= amount) {
+            var witness = (long) STOCK.compareAndExchange(this, current,
+                pack(amountOf(current) - amount, reservedOf(current) + amount));
+            if (witness == current) {
+                amountChanged(amountOf(current), amountOf(current) - amount);
+                return true;
+            }
+            current = witness;
+        }
+        return false;
     }
 
     @Override
-    public final void consume(@SuppressWarnings("ParameterHidesMemberVariable") int amount) {
-        this.amount -= amount;
-        owner.save();
+    public final void release(int amount) {
+        update(amount, -amount);
+    }
+
+    @Override
+    public final void consumeReserved(int amount) {
+        owner.consume(this, amount, true);
     }
 
     @Override
     public final boolean isInStock() {
-        return amount > 0;
+        return amountOf(stock) > 0;
     }
 
     final int getAmount() {
-        return amount;
+        return amountOf(stock);
     }
 
     final void setAmount(int amount) {
-        this.amount = amount;
+        //noinspection ReassignedVariable
+        long current = stock;
+        while (true) {
+            var witness = (long) STOCK.compareAndExchange(this, current, pack(amount, reservedOf(current)));
+            if (witness == current)
+                return;
+            current = witness;
+        }
+    }
+
+    /**
+     * @return The stock on hand, including any that is reserved
+     */
+    final int getStock() {
+        var current = stock;
+        return amountOf(current) + reservedOf(current);
+    }
+
+    final int addAmount(int delta) {
+        return amountOf(update(delta, 0));
+    }
+
+    final int addReserved(int delta) {
+        return reservedOf(update(0, delta));
+    }
+
+    final int getSlot() {
+        return slot;
+    }
+
+    final void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    /**
+     * Changes both counters at once.
+     *
+     * @return The packed counters afterwards
+     */
+    private long update(int amountDelta, int reservedDelta) {
+        //noinspection ReassignedVariable
+        long current = stock;
+        while (true) {
+            var updated = pack(amountOf(current) + amountDelta, reservedOf(current) + reservedDelta);
+            var witness = (long) STOCK.compareAndExchange(this, current, updated);
+            if (witness == current) {
+                amountChanged(amountOf(current), amountOf(updated));
+                return updated;
+            }
+            current = witness;
+        }
+    }
+
+    private void amountChanged(int before, int after) {
+        if ((before > 0) != (after > 0) && owner != null)
+            owner.stockStatusChanged();
+    }
+
+    private static long pack(int amount, int reserved) {
+        return (long) amount << Integer.SIZE | reserved & RESERVED_MASK;
+    }
+
+    private static int amountOf(long stock) {
+        return (int) (stock >> Integer.SIZE);
+    }
+
+    private static int reservedOf(long stock) {
+        return (int) stock;
+    }
+
+    /**
+     * @return The stock last read from or written to the owner's file
+     */
+    final int getPersisted() {
+        return persisted;
+    }
+
+    final void setPersisted(int persisted) {
+        this.persisted = persisted;
     }
 
     final void setOwner(BaseInventoriedFile<?> owner) {
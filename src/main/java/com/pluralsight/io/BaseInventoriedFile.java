@@ -5,76 +5,680 @@
 package com.pluralsight.io;
 
 import java.io.*;
+import java.nio.file.*;
+import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 /**
  * A file-backed implementation of {@link InventoriedFile}.
+ * Stock may be consumed from any number of threads; saving never blocks consumers.
+ * Whatever mode a file is in, changes not yet saved are written when the JVM shuts down.
  *
  * @param <T> The type of {@code Inventoried} item this resource manages
  */
 public abstract class BaseInventoriedFile<T extends BaseInventoried> implements InventoriedFile<T> {
+    private static final ScheduledExecutorService BACKGROUND = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "inventory-background");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final int SNAPSHOT_ATTEMPTS = 4;
+    private static final long GROUP_COMMIT_WINDOW_MILLIS = 5;
+    private static final AtomicLong CATALOG_EDITS = new AtomicLong();
+    private static final String JOURNAL_MARKER = "#journal";
+    // Held weakly, so a file nobody uses any more can still be collected.
+    private static final Set<BaseInventoriedFile<?>> OPEN_FILES =
+        Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(BaseInventoriedFile::flushAll, "inventory-shutdown-flush"));
+    }
+
     @SuppressWarnings("FieldNamingConvention")
     private final File file;
-    private final List<T> items;
+    private final File journal;
+    private final File compactingJournal;
+    private final File tempFile;
+    private final AtomicLong version;
+    private final AtomicInteger pendingChanges;
+    private final AtomicBoolean flushScheduled;
+    private final AtomicBoolean compacting;
+    private final Object journalLock;
+    private final Object fileLock;
+    private final Object commitLock;
+    private final AtomicInteger stockStatus;
+    private volatile long writtenVersion;
+    private CompletableFuture<Void> pendingCommit;
+    private volatile Catalog<T> catalog;
+    private volatile InStockView<T> inStock;
+    private volatile Duration flushInterval;
+    private volatile int flushThreshold;
+    private volatile boolean journaling;
+    private volatile MappedInventoriedFile<T> store;
+    private Writer journalWriter;
+    private long journalSize;
+    private long compactThreshold;
+    // The sequence number of the last journal entry, which every snapshot records so replay can skip what it holds.
+    private long journalSequence;
 
     /**
      * @param file The file to use as a backing.
      */
     protected BaseInventoriedFile(File file) {
         this.file = file;
-        items = load();
+        journal = new File(file.getPath() + ".journal");
+        compactingJournal = new File(file.getPath() + ".journal.compacting");
+        tempFile = new File(file.getPath() + ".tmp");
+        version = new AtomicLong();
+        pendingChanges = new AtomicInteger();
+        flushScheduled = new AtomicBoolean();
+        compacting = new AtomicBoolean();
+        journalLock = new Object();
+        fileLock = new Object();
+        commitLock = new Object();
+        stockStatus = new AtomicInteger();
+        //noinspection AssignmentToNull
+        flushInterval = null;
+        flushThreshold = 1;
+        journalSequence = 0;
+        catalog = index(load());
+        replayJournal();
+        OPEN_FILES.add(this);
     }
 
+    /**
+     * @return The file used as a backing
+     */
+    public final File getFile() {
+        return file;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The list is cached, and only rebuilt after an item has gone in or out of stock.
+     */
     @Override
     public final List<T> getItems() {
-        return items.stream().filter(T::isInStock).toList();
+        var status = stockStatus.get();
+        var current = catalog;
+        var view = inStock;
+        if (view != null && view.status() == status && view.catalog() == current)
+            return view.items();
+
+        view = new InStockView<>(current, status, current.items().stream().filter(T::isInStock).toList());
+        inStock = view;
+        return view.items();
     }
 
     @Override
     public final List<T> getAllItems() {
-        return Collections.unmodifiableList(items);
+        return Collections.unmodifiableList(catalog.items());
+    }
+
+    @Override
+    public final Optional<T> findByName(String name) {
+        return Optional.ofNullable(catalog.byName().get(name));
+    }
+
+    @Override
+    public final List<String> getCategories() {
+        return List.copyOf(catalog.byCategory().keySet());
+    }
+
+    @Override
+    public final List<T> getAllItemsInCategory(String category) {
+        return catalog.byCategory().getOrDefault(category, List.of());
+    }
+
+    /**
+     * Switches this file to write-behind mode.
+     * Instead of rewriting the file on every change, changes are batched up
+     * and written once {@code flushThreshold} of them are pending or {@code flushInterval} has passed
+     * since the first of them, whichever comes first.
+     *
+     * @param flushInterval  The longest a change may stay unsaved
+     * @param flushThreshold The most changes that may stay unsaved
+     */
+    @SuppressWarnings("ParameterHidesMemberVariable")
+    public final void enableWriteBehind(Duration flushInterval, int flushThreshold) {
+        //noinspection IfCanBeAssertion
+        if (flushThreshold < 1)
+            throw new IllegalArgumentException("The flush threshold must be positive, got " + flushThreshold);
+        this.flushInterval = flushInterval;
+        this.flushThreshold = flushThreshold;
+    }
+
+    /**
+     * Switches this file to journal mode.
+     * Instead of rewriting the file on every change, each change is appended to a journal next to it.
+     * Once the journal grows past {@code compactThreshold} bytes,
+     * it is folded back into the file in the background.
+     * Each change is numbered, and the file records the number of the last change it holds,
+     * so when any journal left over from a previous run is replayed as the file is loaded,
+     * only changes which never made it into the file are applied.
+     *
+     * @param compactThreshold The size in bytes at which the journal is compacted
+     */
+    @SuppressWarnings("ParameterHidesMemberVariable")
+    public final void enableJournal(long compactThreshold) {
+        //noinspection IfCanBeAssertion
+        if (compactThreshold < 1)
+            throw new IllegalArgumentException("The compaction threshold must be positive, got " + compactThreshold);
+        synchronized (journalLock) {
+            this.compactThreshold = compactThreshold;
+            if (journalWriter != null)
+                return;
+            try {
+                journalWriter = new BufferedWriter(new FileWriter(journal, true));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open inventory journal \"" + journal.getPath() + "\"!", e);
+            }
+            journalSize = journal.length();
+            journaling = true;
+        }
+    }
+
+    /**
+     * Writes any pending changes to disk, waiting until they are durable.
+     *
+     * @throws UncheckedIOException If the file could not be written
+     */
+    public final void flush() {
+        pendingChanges.set(0);
+        if (journaling || store != null || version.get() == writtenVersion)
+            return;
+        try {
+            save().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the pending changes of every file, so a save still waiting on its group commit isn't lost at exit.
+     */
+    private static void flushAll() {
+        List<BaseInventoriedFile<?>> files;
+        synchronized (OPEN_FILES) {
+            files = new ArrayList<>(OPEN_FILES);
+        }
+        for (var file : files)
+            try {
+                file.flush();
+            } catch (UncheckedIOException e) {
+                System.err.println("Error: Could not save inventory file \"" + file.file.getPath() + "\"!");
+                e.printStackTrace(System.err);
+            }
     }
 
     private List<T> load() {
-        try (FileReader fr = new FileReader(file);
-             BufferedReader br = new BufferedReader(fr)) {
-            return br.lines()
-                .filter(s -> !s.isBlank() && !s.isEmpty())
-                .map(this::readLine)
-                .toList();
+        try (var fields = new FieldReader(new FileReader(file))) {
+            var items = new ArrayList<T>();
+            while (fields.nextLine()) {
+                if (fields.skipIf(JOURNAL_MARKER)) {
+                    var sequence = fields.nextLong();
+                    synchronized (journalLock) {
+                        journalSequence = Math.max(journalSequence, sequence);
+                    }
+                    continue;
+                }
+                items.add(readLine(fields));
+            }
+            return Collections.unmodifiableList(items);
         } catch (IOException e) {
             throw new UncheckedIOException("Could not load inventory file \"" + file.getPath() + "\"!", e);
         }
     }
 
-    private T readLine(String line) {
-        var sep = line.indexOf('|');
-        int count = Integer.parseInt(line.substring(0, sep));
+    /**
+     * Counts the reloads, across every file, which changed anything about an existing item other than its stock.
+     * Anything derived from item prices, such as a running total, is out of date once this changes.
+     *
+     * @return The number of such reloads so far
+     */
+    public static long getCatalogEdits() {
+        return CATALOG_EDITS.get();
+    }
+
+    /**
+     * Re-reads the file, applying any changes made to it since it was last read or written.
+     * Items are matched up by name and keep their identity, so references held by in-progress orders stay valid.
+     * Stock changes are applied on top of any consumption which has not been written yet,
+     * and other changes, such as prices, are copied onto the existing items.
+     * Items which appear in the file are added, and items which disappear from it are dropped.
+     * The resulting catalog is swapped in all at once.
+     *
+     * @throws UncheckedIOException  If the file could not be read or written
+     * @throws IllegalStateException If items were added or removed while stock is kept in a mapped file
+     */
+    public final void reload() {
+        synchronized (journalLock) {
+            synchronized (fileLock) {
+                var current = catalog;
+                var loaded = load();
+
+                List<T> merged = new ArrayList<>(loaded.size());
+                for (T fresh : loaded)
+                    merged.add(current.byName().getOrDefault(fresh.getName(), fresh));
+                var structural = merged.size() != current.items().size();
+                for (//noinspection ReassignedVariable
+                    int i = 0; !structural && i < merged.size(); i++)
+                    structural = merged.get(i) != current.items().get(i);
+                if (structural && store != null)
+                    throw new IllegalStateException("Items cannot be added to or removed from \""
+                        + file.getPath() + "\" while its stock is kept in a mapped file");
+
+                //noinspection ReassignedVariable
+                boolean changed = structural;
+                //noinspection ReassignedVariable
+                boolean edited = false;
+                for (//noinspection ReassignedVariable
+                    int i = 0; i < merged.size(); i++) {
+                    T existing = merged.get(i);
+                    T fresh = loaded.get(i);
+                    if (existing == fresh)
+                        continue;
+                    var delta = fresh.getPersisted() - existing.getPersisted();
+                    if (delta != 0) {
+                        existing.addAmount(delta);
+                        existing.setPersisted(fresh.getPersisted());
+                        if (store != null)
+                            store.recordConsumption(existing, -delta);
+                        changed = true;
+                    }
+                    edited |= updateFrom(existing, fresh);
+                }
+                if (edited)
+                    CATALOG_EDITS.incrementAndGet();
+                if (!changed && !edited)
+                    return;
+
+                if (structural) {
+                    var kept = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+                    kept.addAll(merged);
+                    for (T item : current.items())
+                        if (!kept.contains(item))
+                            item.setSlot(-1);
+                }
+                catalog = index(merged);
+                version.incrementAndGet();
+                stockStatusChanged();
+
+                try {
+                    writeSnapshotLocked(snapshot());
+                    if (journaling) {
+                        journalWriter.close();
+                        journalWriter = new BufferedWriter(new FileWriter(journal, false));
+                        journalSize = 0;
+                        //noinspection ResultOfMethodCallIgnored
+                        compactingJournal.delete();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not update inventory file \"" + file.getPath() + "\"!", e);
+                }
+            }
+        }
+    }
+
+    private Catalog<T> index(List<T> items) {
+        for (//noinspection ReassignedVariable
+            int i = 0; i < items.size(); i++)
+            items.get(i).setSlot(i);
+        return new Catalog<>(List.copyOf(items), indexByName(items), indexByCategory(items));
+    }
+
+    private static <T extends BaseInventoried> Map<String, T> indexByName(Iterable<T> items) {
+        Map<String, T> index = new HashMap<>();
+        for (T item : items)
+            index.putIfAbsent(item.getName(), item);
+        return index;
+    }
+
+    private Map<String, List<T>> indexByCategory(Iterable<T> items) {
+        Map<String, List<T>> index = new LinkedHashMap<>();
+        for (T item : items) {
+            var category = categoryOf(item);
+            if (category != null)
+                index.computeIfAbsent(category, c -> new ArrayList<>()).add(item);
+        }
+        index.replaceAll((category, list) -> List.copyOf(list));
+        return Collections.unmodifiableMap(index);
+    }
+
+    private T readLine(FieldReader fields) {
+        int count = fields.nextInt();
 
-        var obj = readFromLine(line.substring(sep + 1));
+        var obj = readFromLine(fields);
         obj.setAmount(count);
+        obj.setPersisted(count);
         obj.setOwner(this);
         return obj;
     }
 
-    final void save() {
-        try (FileWriter fw = new FileWriter(file);
-             BufferedWriter bw = new BufferedWriter(fw)) {
-            for (T item : items)
-                bw.write("%d|%s%n".formatted(item.getAmount(), convertToLine(item)));
+    /**
+     * Replays any journals left over from a previous run.
+     * A journal still marked as compacting may or may not have made it into the file,
+     * so only changes numbered after the last one the file holds are applied.
+     */
+    private void replayJournal() {
+        if (!compactingJournal.exists() && !journal.exists())
+            return;
+        synchronized (journalLock) {
+            var snapshotSequence = journalSequence;
+            replayJournal(compactingJournal, snapshotSequence);
+            replayJournal(journal, snapshotSequence);
+        }
+        writeNow();
+        //noinspection ResultOfMethodCallIgnored
+        journal.delete();
+        //noinspection ResultOfMethodCallIgnored
+        compactingJournal.delete();
+    }
+
+    /**
+     * Applies the changes in a journal which are newer than the file.
+     * Journals from before changes were numbered hold only a slot and an amount, and are applied in full.
+     */
+    private void replayJournal(File source, long snapshotSequence) {
+        assert Thread.holdsLock(journalLock);
+        if (!source.exists())
+            return;
+        try (var fields = new FieldReader(new FileReader(source))) {
+            while (fields.nextLine()) {
+                var first = fields.nextLong();
+                var second = fields.nextInt();
+                if (fields.hasNext()) {
+                    journalSequence = Math.max(journalSequence, first);
+                    if (first <= snapshotSequence)
+                        continue;
+                    var item = catalog.items().get(second);
+                    item.setAmount(item.getAmount() - fields.nextInt());
+                } else {
+                    var item = catalog.items().get((int) first);
+                    item.setAmount(item.getAmount() - second);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not replay inventory journal \"" + source.getPath() + "\"!", e);
+        }
+    }
+
+    final void consume(BaseInventoried item, int amount, boolean reserved) {
+        var mapped = store;
+        if (mapped != null) {
+            take(item, amount, reserved);
+            if (item.getSlot() >= 0)
+                mapped.recordConsumption(item, amount);
+            return;
+        }
+
+        if (journaling) {
+            // The change and its record must land on the same side of a compaction.
+            synchronized (journalLock) {
+                take(item, amount, reserved);
+                // Items dropped by a reload are no longer in the file, so there is nothing to record.
+                if (item.getSlot() >= 0)
+                    appendToJournal(item, amount);
+            }
+            return;
+        }
+
+        take(item, amount, reserved);
+        markDirty();
+    }
+
+    final void stockStatusChanged() {
+        stockStatus.incrementAndGet();
+    }
+
+    private void take(BaseInventoried item, int amount, boolean reserved) {
+        if (reserved)
+            item.addReserved(-amount);
+        else
+            item.addAmount(-amount);
+        version.incrementAndGet();
+    }
+
+    private void appendToJournal(BaseInventoried item, int amount) {
+        assert Thread.holdsLock(journalLock);
+        var record = "%d|%d|%d%n".formatted(++journalSequence, item.getSlot(), amount);
+        try {
+            journalWriter.write(record);
+            journalWriter.flush();
+        } catch (IOException e) {
+            System.err.println("Error: Could not append to inventory journal \"" + journal.getPath() + "\"!");
+            e.printStackTrace(System.err);
+            // Fold the journal into the file so the change is not lost.
+            if (compacting.compareAndSet(false, true))
+                BACKGROUND.execute(this::compact);
+            return;
+        }
+
+        journalSize += record.length();
+        if (journalSize >= compactThreshold && compacting.compareAndSet(false, true))
+            BACKGROUND.execute(this::compact);
+    }
+
+    /**
+     * Folds the journal back into the file.
+     * Consumers are only held up while the journal is swapped out, never while the file is written.
+     */
+    private void compact() {
+        Snapshot<T> snapshot;
+        synchronized (journalLock) {
+            try {
+                journalWriter.close();
+                if (compactingJournal.exists()) {
+                    // A previous compaction failed; keep appending to its journal so nothing is lost.
+                    try (var in = new FileInputStream(journal);
+                         var out = new FileOutputStream(compactingJournal, true)) {
+                        in.transferTo(out);
+                    }
+                    //noinspection ResultOfMethodCallIgnored
+                    journal.delete();
+                } else if (!journal.renameTo(compactingJournal))
+                    throw new IOException("Could not rename \"" + journal.getPath() + "\"");
+                journalWriter = new BufferedWriter(new FileWriter(journal, false));
+                journalSize = 0;
+            } catch (IOException e) {
+                System.err.println("Error: Could not rotate inventory journal \"" + journal.getPath() + "\"!");
+                e.printStackTrace(System.err);
+                compacting.set(false);
+                return;
+            }
+            snapshot = snapshot();
+        }
+
+        try {
+            synchronized (fileLock) {
+                writeSnapshotLocked(snapshot);
+            }
+            //noinspection ResultOfMethodCallIgnored
+            compactingJournal.delete();
         } catch (IOException e) {
             System.err.println("Error: Could not update inventory file \"" + file.getPath() + "\"!");
             e.printStackTrace(System.err);
         }
+        compacting.set(false);
+    }
+
+    private void markDirty() {
+        if (pendingChanges.incrementAndGet() >= flushThreshold) {
+            pendingChanges.set(0);
+            save();
+            return;
+        }
+
+        var interval = flushInterval;
+        if (interval != null && flushScheduled.compareAndSet(false, true))
+            BACKGROUND.schedule(() -> {
+                flushScheduled.set(false);
+                pendingChanges.set(0);
+                save();
+            }, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hands persistence of stock counts over to a memory-mapped store.
+     * The file itself is only written when explicitly asked to.
+     */
+    @SuppressWarnings("ParameterHidesMemberVariable")
+    final void attachStore(MappedInventoriedFile<T> store) {
+        this.store = store;
+    }
+
+    /**
+     * Writes the current stock to the file, whether or not anything has changed.
+     *
+     * @throws UncheckedIOException If the file could not be written
+     */
+    final void writeNow() {
+        var snapshot = snapshot();
+        synchronized (fileLock) {
+            try {
+                writeSnapshotLocked(snapshot);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not update inventory file \"" + file.getPath() + "\"!", e);
+            }
+        }
+    }
+
+    /**
+     * Requests that the current stock be saved to the file.
+     * Every request arriving within a short window is written by a single group commit in the background,
+     * so the caller never waits for the disk.
+     *
+     * @return A future completed once the stock as of this call is durable,
+     * or completed exceptionally with an {@link UncheckedIOException} if it could not be written
+     */
+    final CompletableFuture<Void> save() {
+        synchronized (commitLock) {
+            if (pendingCommit == null) {
+                pendingCommit = new CompletableFuture<>();
+                BACKGROUND.schedule(this::groupCommit, GROUP_COMMIT_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return pendingCommit;
+        }
+    }
+
+    private void groupCommit() {
+        CompletableFuture<Void> commit;
+        synchronized (commitLock) {
+            commit = pendingCommit;
+            //noinspection AssignmentToNull
+            pendingCommit = null;
+        }
+
+        var snapshot = version.get() != writtenVersion ? snapshot() : null;
+        synchronized (fileLock) {
+            try {
+                if (snapshot != null)
+                    writeSnapshotLocked(snapshot);
+                commit.complete(null);
+            } catch (IOException e) {
+                System.err.println("Error: Could not update inventory file \"" + file.getPath() + "\"!");
+                e.printStackTrace(System.err);
+                commit.completeExceptionally(
+                    new UncheckedIOException("Could not update inventory file \"" + file.getPath() + "\"!", e));
+            }
+        }
+    }
+
+    /**
+     * Copies the stock of every item, retrying a few times if a consumption lands mid-copy.
+     * If consumers never let up, the last copy is used; a later save will pick up the difference.
+     * Journaled changes are held off while copying, so the copy holds exactly the journal entries up to its sequence.
+     * The journal lock must be taken before the file lock, never while holding it.
+     */
+    private Snapshot<T> snapshot() {
+        assert !Thread.holdsLock(fileLock) || Thread.holdsLock(journalLock);
+        synchronized (journalLock) {
+            var items = catalog.items();
+            var amounts = new int[items.size()];
+            long before;
+            //noinspection ReassignedVariable
+            int attempt = 0;
+            do {
+                before = version.get();
+                for (//noinspection ReassignedVariable
+                    int i = 0; i < amounts.length; i++)
+                    amounts[i] = items.get(i).getStock();
+            } while (version.get() != before && ++attempt < SNAPSHOT_ATTEMPTS);
+            return new Snapshot<>(before, journalSequence, items, amounts);
+        }
+    }
+
+    /**
+     * Writes a snapshot to the file, unless a newer one has already been written.
+     * The snapshot goes to a temporary file which is synced and then renamed over the file,
+     * so a crash part-way through leaves the previous contents intact.
+     */
+    private void writeSnapshotLocked(Snapshot<T> snapshot) throws IOException {
+        assert Thread.holdsLock(fileLock);
+        if (snapshot.version() < writtenVersion)
+            return;
+        var items = snapshot.items();
+        var amounts = snapshot.amounts();
+        try (FileOutputStream fos = new FileOutputStream(tempFile);
+             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos))) {
+            // Files which have never had a journal are left exactly as they were.
+            if (snapshot.journalSequence() > 0)
+                bw.write("%s|%d%n".formatted(JOURNAL_MARKER, snapshot.journalSequence()));
+            for (//noinspection ReassignedVariable
+                int i = 0; i < amounts.length; i++)
+                bw.write("%d|%s%n".formatted(amounts[i], convertToLine(items.get(i))));
+            bw.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        writtenVersion = snapshot.version();
+        for (//noinspection ReassignedVariable
+            int i = 0; i < amounts.length; i++)
+            items.get(i).setPersisted(amounts[i]);
+    }
+
+    private record Catalog<T>(List<T> items, Map<String, T> byName, Map<String, List<T>> byCategory) {
+    }
+
+    private record Snapshot<T>(long version, long journalSequence, List<T> items, int[] amounts) {
+    }
+
+    private record InStockView<T>(Catalog<T> catalog, int status, List<T> items) {
     }
 
     /**
      * Converts a serialized line of data into an item.
      *
-     * @param line The line of data to convert
+     * @param fields The fields of the line to convert, positioned after the stock count
      * @return An item represented by that line of data
      */
-    protected abstract T readFromLine(String line);
+    protected abstract T readFromLine(FieldReader fields);
+
+    /**
+     * Gets the category an item is filed under, for {@link #getCategories()}.
+     * By default, items are not categorized.
+     *
+     * @param item The item to categorize
+     * @return The category of the item, or {@code null} if it has none
+     */
+    @SuppressWarnings("unused")
+    protected String categoryOf(T item) {
+        return null;
+    }
+
+    /**
+     * Copies the details of a freshly loaded item onto an existing item with the same name.
+     * Stock is handled separately.
+     *
+     * @param item   The existing item to update
+     * @param source The freshly loaded item
+     * @return Whether anything about the existing item changed
+     */
+    protected abstract boolean updateFrom(T item, T source);
 
     /**
      * Converts an item into a serialized line of data.
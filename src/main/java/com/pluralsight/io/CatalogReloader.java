@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.io;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Watches catalog files for changes made outside the application, such as a restock or a price change,
+ * and reloads them in place.
+ */
+public final class CatalogReloader implements Closeable {
+    private static final long SETTLE_MILLIS = 100;
+
+    private final WatchService watcher;
+    private final Map<Path, Runnable> reloaders;
+    private final Set<Path> directories;
+    private Thread thread;
+
+    /**
+     * Creates a reloader which is not watching anything yet.
+     */
+    public CatalogReloader() {
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start watching for catalog changes", e);
+        }
+        reloaders = new LinkedHashMap<>();
+        directories = new HashSet<>();
+    }
+
+    /**
+     * Registers a file to watch.
+     * When several files change at once, they are reloaded in the order they were registered,
+     * so files which depend on others should be registered last.
+     *
+     * @param file   The file to watch
+     * @param reload What to do when the file changes
+     */
+    public synchronized void watch(File file, Runnable reload) {
+        var path = file.toPath().toAbsolutePath().normalize();
+        var directory = path.getParent();
+        if (directories.add(directory)) {
+            try {
+                directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not watch directory \"" + directory + "\"", e);
+            }
+        }
+        reloaders.put(path, reload);
+    }
+
+    /**
+     * Starts watching in the background.
+     */
+    public synchronized void start() {
+        if (thread != null)
+            return;
+        thread = new Thread(this::run, "catalog-reloader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+    }
+
+    @SuppressWarnings("InfiniteLoopStatement")
+    private void run() {
+        try {
+            while (true) {
+                var changed = new HashSet<Path>();
+                collect(watcher.take(), changed);
+                // Editors often write a file in several steps; let them finish before reloading.
+                Thread.sleep(SETTLE_MILLIS);
+                for (WatchKey key = watcher.poll(); key != null; key = watcher.poll())
+                    collect(key, changed);
+
+                List<Map.Entry<Path, Runnable>> due;
+                synchronized (this) {
+                    due = reloaders.entrySet().stream().filter(en -> changed.contains(en.getKey())).toList();
+                }
+                for (var entry : due) {
+                    try {
+                        entry.getValue().run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Error: Could not reload catalog file \"" + entry.getKey() + "\"!");
+                        e.printStackTrace(System.err);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Nothing left to watch.
+        }
+    }
+
+    private static void collect(WatchKey key, Collection<? super Path> changed) {
+        var directory = (Path) key.watchable();
+        for (var event : key.pollEvents())
+            if (event.context() instanceof Path name)
+                changed.add(directory.resolve(name));
+        key.reset();
+    }
+}
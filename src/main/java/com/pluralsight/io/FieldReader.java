@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.io;
+
+import java.io.*;
+
+/**
+ * Reads pipe-delimited records straight out of a character buffer.
+ * Numbers and booleans are parsed in place, so the only objects created while reading
+ * are the strings asked for with {@link #nextString()} and {@link #rest()}.
+ * Blank lines are skipped.
+ */
+public final class FieldReader implements Closeable {
+    private static final char SEPARATOR = '|';
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    private final Reader reader;
+    private char[] buffer;
+    private int limit;
+    private int lineStart;
+    private int lineEnd;
+    private int position;
+    private int next;
+    private boolean eof;
+
+    /**
+     * @param reader The source of the records; it is closed along with this reader
+     */
+    public FieldReader(Reader reader) {
+        this.reader = reader;
+        buffer = new char[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Moves to the next non-blank line.
+     *
+     * @return Whether there was another line
+     * @throws IOException If the underlying reader fails
+     */
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    public boolean nextLine() throws IOException {
+        while (true) {
+            var end = findNewline(next);
+            while (end < 0 && !eof) {
+                fill();
+                end = findNewline(next);
+            }
+            if (end < 0) {
+                if (next >= limit)
+                    return false;
+                end = limit;
+            }
+
+            lineStart = next;
+            lineEnd = end;
+            position = next;
+            next = end + 1;
+            var content = contentEnd();
+            for (//noinspection ReassignedVariable
+                int i = lineStart; i < content; i++)
+                if (!Character.isWhitespace(buffer[i]))
+                    return true;
+        }
+    }
+
+    /**
+     * @return Whether the current line has another field
+     */
+    public boolean hasNext() {
+        return position <= contentEnd();
+    }
+
+    /**
+     * @return The next field, parsed as an integer
+     * @throws NumberFormatException If the field is not an integer
+     */
+    public int nextInt() {
+        var end = fieldEnd();
+        var value = parseLong(position, end);
+        if (value != (int) value)
+            throw numberFormat(position, end);
+        position = end + 1;
+        return (int) value;
+    }
+
+    /**
+     * @return The next field, parsed as a long integer
+     * @throws NumberFormatException If the field is not an integer
+     */
+    public long nextLong() {
+        var end = fieldEnd();
+        var value = parseLong(position, end);
+        position = end + 1;
+        return value;
+    }
+
+    /**
+     * Moves past the next field if it is exactly the given text.
+     *
+     * @param field The text to look for
+     * @return Whether the next field was that text
+     */
+    public boolean skipIf(String field) {
+        var end = fieldEnd();
+        if (end - position != field.length())
+            return false;
+        for (//noinspection ReassignedVariable
+            int i = 0; i < field.length(); i++)
+            if (buffer[position + i] != field.charAt(i))
+                return false;
+        position = end + 1;
+        return true;
+    }
+
+    /**
+     * Reads an amount of money written in dollars, such as {@code 1.50}, as an exact number of cents.
+     *
+     * @return The next field, in cents
+     * @throws NumberFormatException If the field is not an amount of money, or is more precise than a cent
+     */
+    public long nextCents() {
+        var end = fieldEnd();
+        var value = parseCents(position, end);
+        position = end + 1;
+        return value;
+    }
+
+    /**
+     * @return The next field, parsed the same way as {@link Boolean#parseBoolean(String)}
+     */
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    public boolean nextBoolean() {
+        var end = fieldEnd();
+        var value = end - position == 4
+                    && Character.toLowerCase(buffer[position]) == 't'
+                    && Character.toLowerCase(buffer[position + 1]) == 'r'
+                    && Character.toLowerCase(buffer[position + 2]) == 'u'
+                    && Character.toLowerCase(buffer[position + 3]) == 'e';
+        position = end + 1;
+        return value;
+    }
+
+    /**
+     * @return The next field
+     */
+    public String nextString() {
+        var end = fieldEnd();
+        var value = new String(buffer, position, end - position);
+        position = end + 1;
+        return value;
+    }
+
+    /**
+     * Reads the remainder of the line as a single field, separators included.
+     * This is how names, which may themselves contain separators, are read.
+     *
+     * @return The rest of the current line
+     */
+    public String rest() {
+        var end = contentEnd();
+        if (position > end)
+            throw new IllegalArgumentException("The line did not have enough fields: " + line());
+        var value = new String(buffer, position, end - position);
+        position = end + 1;
+        return value;
+    }
+
+    /**
+     * @return The current line, for error messages
+     */
+    public String line() {
+        return new String(buffer, lineStart, contentEnd() - lineStart);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int contentEnd() {
+        return lineEnd > lineStart && buffer[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+    }
+
+    private int fieldEnd() {
+        var end = contentEnd();
+        if (position > end)
+            throw new IllegalArgumentException("The line did not have enough fields: " + line());
+        for (//noinspection ReassignedVariable
+            int i = position; i < end; i++)
+            if (buffer[i] == SEPARATOR)
+                return i;
+        return end;
+    }
+
+    private int findNewline(int from) {
+        for (//noinspection ReassignedVariable
+            int i = from; i < limit; i++)
+            if (buffer[i] == '\n')
+                return i;
+        return -1;
+    }
+
+    /**
+     * Discards the lines already read, growing the buffer if a single line fills it, then reads more input.
+     */
+    private void fill() throws IOException {
+        var kept = limit - next;
+        if (next == 0 && kept == buffer.length) {
+            var grown = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, kept);
+            buffer = grown;
+        } else if (next > 0)
+            System.arraycopy(buffer, next, buffer, 0, kept);
+        limit = kept;
+        next = 0;
+        lineStart = 0;
+        lineEnd = 0;
+        position = 0;
+
+        var read = reader.read(buffer, limit, buffer.length - limit);
+        if (read < 0)
+            eof = true;
+        else
+            limit += read;
+    }
+
+    private long parseLong(int start, int end) {
+        var i = start;
+        var negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+'))
+            negative = buffer[i++] == '-';
+        if (i == end || end - i > 18)
+            throw numberFormat(start, end);
+
+        var value = 0L;
+        for (; i < end; i++) {
+            var digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9)
+                throw numberFormat(start, end);
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private long parseCents(int start, int end) {
+        var i = start;
+        var negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+'))
+            negative = buffer[i++] == '-';
+
+        var cents = 0L;
+        var fraction = -1;
+        var sawDigit = false;
+        for (; i < end; i++) {
+            var c = buffer[i];
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+                continue;
+            }
+            var digit = c - '0';
+            if (digit < 0 || digit > 9)
+                throw numberFormat(start, end);
+            sawDigit = true;
+            if (fraction >= Money.CENT_DIGITS) {
+                // Trailing zeros past the cents are harmless; anything else would be rounded away.
+                if (digit != 0)
+                    throw numberFormat(start, end);
+                continue;
+            }
+            if (cents > (Long.MAX_VALUE - digit) / 10)
+                throw numberFormat(start, end);
+            cents = cents * 10 + digit;
+            if (fraction >= 0)
+                fraction++;
+        }
+        if (!sawDigit)
+            throw numberFormat(start, end);
+
+        for (//noinspection ReassignedVariable
+            int f = Math.max(fraction, 0); f < Money.CENT_DIGITS; f++) {
+            if (cents > Long.MAX_VALUE / 10)
+                throw numberFormat(start, end);
+            cents *= 10;
+        }
+        return negative ? -cents : cents;
+    }
+
+    private NumberFormatException numberFormat(int start, int end) {
+        return new NumberFormatException("For input string: \"" + new String(buffer, start, end - start) + "\"");
+    }
+}
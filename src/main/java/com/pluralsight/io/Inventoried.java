@@ -8,6 +8,11 @@ package com.pluralsight.io;
  * Represents an item with a tracked inventory.
  */
 public interface Inventoried {
+    /**
+     * @return The name of this item
+     */
+    String getName();
+
     /**
      * Consumes a certain amount of the item from stock.
      *
@@ -15,6 +20,29 @@ public interface Inventoried {
      */
     void consume(int amount);
 
+    /**
+     * Sets aside a certain amount of the item so that nobody else can take it.
+     * Reserved stock no longer counts towards {@link #isInStock()}.
+     *
+     * @param amount The amount to reserve
+     * @return Whether there was enough stock to reserve
+     */
+    boolean reserve(int amount);
+
+    /**
+     * Returns a certain amount of previously reserved stock.
+     *
+     * @param amount The amount to release
+     */
+    void release(int amount);
+
+    /**
+     * Consumes a certain amount of previously reserved stock.
+     *
+     * @param amount The amount to consume
+     */
+    void consumeReserved(int amount);
+
     /**
      * @return Whether this item is considered "in-stock"
      */
@@ -11,7 +11,6 @@ import java.util.*;
  *
  * @param <T> The type of {@code Inventoried} item this resource manages
  */
-@SuppressWarnings("InterfaceMayBeAnnotatedFunctional")
 public interface InventoriedFile<T extends Inventoried> {
     /**
      * @return The items managed by this resource
@@ -22,4 +21,22 @@ public interface InventoriedFile<T extends Inventoried> {
      * @return The items managed by this resource, including those which are out-of-stock
      */
     List<T> getAllItems();
+
+    /**
+     * @param name The name of an item
+     * @return The item with that name, whether in-stock or not, if there is one
+     */
+    Optional<T> findByName(String name);
+
+    /**
+     * @return The distinct categories of the items managed by this resource, in the order they first appear,
+     * or an empty list if these items are not categorized
+     */
+    List<String> getCategories();
+
+    /**
+     * @param category A category from {@link #getCategories()}
+     * @return The items in that category, including those which are out-of-stock
+     */
+    List<T> getAllItemsInCategory(String category);
 }
@@ -8,8 +8,20 @@ package com.pluralsight.io;
  * Represents a line item associated with an {@link Inventoried} item.
  */
 public interface InventoriedLineItem extends LineItem {
+    /**
+     * @return The inventory this line item takes from
+     */
+    Inventoried getInventoried();
+
+    /**
+     * @return The amount of stock this line item takes from its inventory
+     */
+    int getAmount();
+
     /**
      * Consumes the line item from its inventory.
      */
-    void consume();
+    default void consume() {
+        getInventoried().consume(getAmount());
+    }
 }
@@ -16,9 +16,28 @@ public interface LineItem {
     String getName();
 
     /**
-     * @return The price associated with this line item
+     * @return The price associated with this line item, in cents
      */
-    double getPrice();
+    long getPriceCents();
+
+    /**
+     * @return The price associated with this line item, in dollars, for display
+     */
+    default double getPrice() {
+        return Money.toDollars(getPriceCents());
+    }
+
+    /**
+     * Items which can keep track of their total as they change should override this.
+     *
+     * @return The price of this line item and everything under it, in cents
+     */
+    default long getTotalCents() {
+        var total = getPriceCents();
+        for (var subItem : getSubItems())
+            total += subItem.getTotalCents();
+        return total;
+    }
 
     /**
      * @return Any subcomponents of this line item, e.g. extra toppings
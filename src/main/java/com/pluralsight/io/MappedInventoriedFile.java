@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.io;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * An implementation of {@link InventoriedFile} which keeps stock counts in a memory-mapped binary file.
+ * Names, prices and so on still come from a {@link BaseInventoriedFile},
+ * but consuming stock is an in-place update of a single slot instead of a rewrite of the whole catalog.
+ *
+ * <p>The binary file holds a small header followed by one 4-byte slot per item, in catalog order.
+ * Since slots are matched to items by position, the binary file must be re-imported
+ * whenever items are added to or removed from the catalog.</p>
+ *
+ * <p>Closing this forces the stock counts out to the storage device;
+ * it should be closed once nothing will consume any more stock.</p>
+ *
+ * @param <T> The type of {@code Inventoried} item this resource manages
+ */
+public final class MappedInventoriedFile<T extends BaseInventoried> implements InventoriedFile<T>, Closeable {
+    private static final int MAGIC = 0x44435354;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+    private static final VarHandle SLOTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final BaseInventoriedFile<T> catalog;
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Opens the binary stock file for a catalog, importing it from the catalog if it does not exist yet.
+     * Once opened, the stock counts in the binary file replace those from the catalog.
+     *
+     * @param catalog The catalog the items come from
+     * @param file    The binary file holding stock counts
+     */
+    public MappedInventoriedFile(BaseInventoriedFile<T> catalog, File file) {
+        this.catalog = catalog;
+        if (!file.exists())
+            importFrom(catalog, file);
+
+        var items = catalog.getAllItems();
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) items.size() * Integer.BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map stock file \"" + file.getPath() + "\"!", e);
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != FORMAT_VERSION)
+            throw new IllegalStateException("\"" + file.getPath() + "\" is not a stock file");
+        if (buffer.getInt(2 * Integer.BYTES) != items.size())
+            throw new IllegalStateException("\"" + file.getPath() + "\" does not match its catalog; it must be re-imported");
+
+        for (T item : items)
+            item.setAmount(buffer.getInt(offsetOf(item)));
+        catalog.stockStatusChanged();
+        catalog.attachStore(this);
+    }
+
+    /**
+     * Writes a binary stock file from the stock counts currently in a catalog, replacing any existing one.
+     *
+     * @param catalog The catalog to import from
+     * @param file    The binary file to write
+     */
+    public static void importFrom(BaseInventoriedFile<?> catalog, File file) {
+        var items = catalog.getAllItems();
+        var data = ByteBuffer.allocate(HEADER_SIZE + items.size() * Integer.BYTES);
+        data.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(items.size());
+        for (var item : items)
+            data.putInt(item.getStock());
+        data.flip();
+
+        try (var channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining())
+                channel.write(data);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write stock file \"" + file.getPath() + "\"!", e);
+        }
+    }
+
+    /**
+     * Writes the stock counts from the binary file back into the catalog's own file.
+     */
+    public void exportToCatalog() {
+        catalog.writeNow();
+    }
+
+    /**
+     * Forces any changes to the stock counts out to the storage device.
+     */
+    public void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Forces any changes to the stock counts out to the storage device.
+     * The mapping itself is released once this is no longer reachable.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    @Override
+    public List<T> getItems() {
+        return catalog.getItems();
+    }
+
+    @Override
+    public List<T> getAllItems() {
+        return catalog.getAllItems();
+    }
+
+    @Override
+    public Optional<T> findByName(String name) {
+        return catalog.findByName(name);
+    }
+
+    @Override
+    public List<String> getCategories() {
+        return catalog.getCategories();
+    }
+
+    @Override
+    public List<T> getAllItemsInCategory(String category) {
+        return catalog.getAllItemsInCategory(category);
+    }
+
+    void recordConsumption(BaseInventoried item, int amount) {
+        SLOTS.getAndAdd(buffer, offsetOf(item), -amount);
+    }
+
+    private static int offsetOf(BaseInventoried item) {
+        return HEADER_SIZE + item.getSlot() * Integer.BYTES;
+    }
+}
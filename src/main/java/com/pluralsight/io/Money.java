@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.io;
+
+/**
+ * Helpers for amounts of money, which are kept as a whole number of cents so that they add up exactly.
+ */
+@SuppressWarnings("UtilityClass")
+public final class Money {
+    /**
+     * The number of cents in a dollar.
+     */
+    public static final long CENTS_PER_DOLLAR = 100;
+    static final int CENT_DIGITS = 2;
+
+    private Money() {
+    }
+
+    /**
+     * @param cents An amount of money in cents
+     * @return The amount in dollars, for display only
+     */
+    public static double toDollars(long cents) {
+        return (double) cents / CENTS_PER_DOLLAR;
+    }
+
+    /**
+     * Formats an amount of money as dollars with two decimal places, without a currency symbol.
+     *
+     * @param cents An amount of money in cents
+     * @return The formatted amount, e.g. {@code 12.05}
+     */
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(formattedLength(cents)), cents).toString();
+    }
+
+    /**
+     * Appends an amount of money the same way as {@link #format(long)}, without creating any intermediate strings.
+     *
+     * @param out   The buffer to append to
+     * @param cents An amount of money in cents
+     * @return {@code out}
+     */
+    public static StringBuilder appendTo(StringBuilder out, long cents) {
+        if (cents < 0)
+            out.append('-');
+        var abs = Math.abs(cents);
+        var fraction = abs % CENTS_PER_DOLLAR;
+        out.append(abs / CENTS_PER_DOLLAR).append('.');
+        if (fraction < 10)
+            out.append('0');
+        return out.append(fraction);
+    }
+
+    /**
+     * @param cents An amount of money in cents
+     * @return The number of characters {@link #format(long)} would produce
+     */
+    public static int formattedLength(long cents) {
+        var length = cents < 0 ? 4 : 3;
+        for (//noinspection ReassignedVariable
+            long dollars = Math.abs(cents) / CENTS_PER_DOLLAR; dollars >= 10; dollars /= 10)
+            length++;
+        return length + 1;
+    }
+}
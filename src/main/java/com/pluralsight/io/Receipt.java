@@ -6,51 +6,168 @@ package com.pluralsight.io;
 
 import java.io.*;
 import java.util.*;
-import java.util.stream.*;
+import java.util.function.*;
 
 /**
  * Represents a receipt for a sale.
+ * A receipt can be stored either as rendered text or, more compactly, encoded with {@link #encode()},
+ * in which case its items can be read back with {@link #decode(byte[])} and rendered only when needed.
  */
 public final class Receipt {
     private static final int ITEM_WIDTH = 40;
     private static final int PRICE_WIDTH = 6;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
 
     @SuppressWarnings("FieldNamingConvention")
     private final LineItem item;
+    private final Reservation reservation;
+    private final StringBuilder buffer;
+    private LineItem[] nodes;
+    private int[] depths;
+    private long[] subtotals;
+    private int count;
+    private char[] chars;
 
     /**
      * @param item The item in this receipt, likely a collection of subitems
      */
     public Receipt(LineItem item) {
+        this(item, null);
+    }
+
+    /**
+     * @param item        The item in this receipt, likely a collection of subitems
+     * @param reservation The reservation holding stock for the item, or {@code null} if there is none
+     */
+    public Receipt(LineItem item, Reservation reservation) {
         this.item = item;
+        this.reservation = reservation;
+        buffer = new StringBuilder();
+        nodes = new LineItem[INITIAL_CAPACITY];
+        depths = new int[INITIAL_CAPACITY];
+        subtotals = new long[INITIAL_CAPACITY];
+        chars = new char[0];
+    }
+
+    /**
+     * Reads back a receipt stored with {@link #encode()}.
+     * The items are copies of what was sold, with the names and prices they had at the time.
+     *
+     * @param data The encoded receipt
+     * @return The receipt, which is rendered only if asked
+     * @throws IllegalArgumentException If the data is not an encoded receipt
+     */
+    public static Receipt decode(byte[] data) {
+        return new Receipt(ReceiptCodec.decode(data));
+    }
+
+    /**
+     * @param data A stored receipt
+     * @return Whether the receipt was stored with {@link #encode()}, rather than as rendered text
+     */
+    public static boolean isEncoded(byte[] data) {
+        return ReceiptCodec.isEncoded(data);
+    }
+
+    /**
+     * @return The item in this receipt
+     */
+    public LineItem getItem() {
+        return item;
     }
 
-    private static Stream<String> processItem(LineItem item, int depth) {
-        var price = priceOf(item);
+    /**
+     * Flattens the tree in pre-order, then fills in every subtotal on the way back up,
+     * so each item is visited once and nothing is allocated beyond the reusable scratch arrays.
+     *
+     * @return The number of items in the tree
+     */
+    private int flatten() {
+        count = 0;
+        flatten(item, 0);
+        return count;
+    }
 
-        var indent = 2 * depth;
-        var width = ITEM_WIDTH - indent;
+    private long flatten(LineItem node, int depth) {
+        var index = count++;
+        if (index == nodes.length) {
+            var capacity = nodes.length * 2;
+            nodes = Arrays.copyOf(nodes, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            subtotals = Arrays.copyOf(subtotals, capacity);
+        }
+        nodes[index] = node;
+        depths[index] = depth;
 
-        //noinspection ConstantExpression
-        return Stream.concat(
-            Stream.of((" ".repeat(indent) + "%-" + width + "s%s").formatted(
-                item.getName(),
-                price == 0 ? "" : ("%" + PRICE_WIDTH + ".2f").formatted(price))),
-            item.getSubItems().stream().flatMap(subItem -> processItem(subItem, depth + 1)));
+        var subtotal = node.getPriceCents();
+        for (var subItem : node.getSubItems())
+            subtotal += flatten(subItem, depth + 1);
+        subtotals[index] = subtotal;
+        return subtotal;
     }
 
-    private static Stream<LineItem> recursiveFlatMap(Stream<? extends LineItem> items) {
-        var list = items.toList();
-        return Stream.concat(list.stream(), list.stream().map(LineItem::getSubItems).map(List::stream).flatMap(Receipt::recursiveFlatMap));
+    private static void forEachItem(LineItem item, Consumer<? super LineItem> action) {
+        action.accept(item);
+        for (var subItem : item.getSubItems())
+            forEachItem(subItem, action);
     }
 
-    private static double priceOf(LineItem item) {
-        return recursiveFlatMap(Stream.of(item)).mapToDouble(LineItem::getPrice).sum();
+    private static void pad(StringBuilder out, int count) {
+        for (//noinspection ReassignedVariable
+            int i = 0; i < count; i++)
+            out.append(' ');
+    }
+
+    /**
+     * Writes this receipt into a buffer, one line per item, without a trailing line separator.
+     * Reusing the same buffer, and the same receipt, keeps rendering free of garbage.
+     *
+     * @param out The buffer to append to
+     * @return {@code out}
+     */
+    public synchronized StringBuilder renderTo(StringBuilder out) {
+        var total = flatten();
+        for (//noinspection ReassignedVariable
+            int i = 0; i < total; i++) {
+            if (i > 0)
+                out.append(LINE_SEPARATOR);
+
+            var indent = 2 * depths[i];
+            pad(out, indent);
+            var name = nodes[i].getName();
+            out.append(name);
+            pad(out, ITEM_WIDTH - indent - name.length());
+
+            var price = subtotals[i];
+            if (price != 0) {
+                pad(out, PRICE_WIDTH - Money.formattedLength(price));
+                Money.appendTo(out, price);
+            }
+        }
+        // Don't keep the line items alive between renders.
+        Arrays.fill(nodes, 0, total, null);
+        return out;
+    }
+
+    /**
+     * Encodes the items on this receipt, with their names and prices as they are now, in a compact binary form.
+     *
+     * @return The encoded receipt
+     * @see #decode(byte[])
+     */
+    public synchronized byte[] encode() {
+        var total = flatten();
+        try {
+            return ReceiptCodec.encode(nodes, depths, total);
+        } finally {
+            Arrays.fill(nodes, 0, total, null);
+        }
     }
 
     @Override
     public String toString() {
-        return processItem(item, 0).collect(Collectors.joining(System.lineSeparator()));
+        return renderTo(new StringBuilder()).toString();
     }
 
     /**
@@ -58,10 +175,16 @@ public final class Receipt {
      * @return {@code true} if the operation succeeded, {@code false} otherwise
      */
     @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
-    public boolean saveToFile(File file) {
-        try (FileWriter fw = new FileWriter(file);
-             BufferedWriter bw = new BufferedWriter(fw)) {
-            bw.write(toString());
+    public synchronized boolean saveToFile(File file) {
+        buffer.setLength(0);
+        renderTo(buffer);
+        var length = buffer.length();
+        if (chars.length < length)
+            chars = new char[length];
+        buffer.getChars(0, length, chars, 0);
+
+        try (FileWriter fw = new FileWriter(file)) {
+            fw.write(chars, 0, length);
             return true;
         } catch (IOException e) {
             System.err.println("Error: Could not update receipt file \"" + file.getPath() + "\"!");
@@ -71,19 +194,33 @@ public final class Receipt {
     }
 
     /**
-     * Updates the inventories of any {@link InventoriedLineItem}s on this receipt
+     * Updates the inventories of any {@link InventoriedLineItem}s on this receipt.
+     * Stock held by the reservation is converted to consumption; anything else is consumed directly.
+     *
+     * @return {@code false} if the reservation had expired and its stock is no longer available
      */
-    public void processSale() {
-        recursiveFlatMap(Stream.of(item)).forEach(flatItem -> {
-            if (flatItem instanceof InventoriedLineItem inv)
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    public boolean processSale() {
+        if (reservation != null && !reservation.renew())
+            return false;
+        forEachItem(item, flatItem -> {
+            if (flatItem instanceof InventoriedLineItem inv && (reservation == null || !reservation.isHolding(inv)))
                 inv.consume();
         });
+        return reservation == null || reservation.commit();
+    }
+
+    /**
+     * @return The total price on this receipt, in cents
+     */
+    public long getPriceCents() {
+        return item.getTotalCents();
     }
 
     /**
-     * @return The total price on this receipt
+     * @return The total price on this receipt, in dollars, for display
      */
     public double getPrice() {
-        return priceOf(item);
+        return Money.toDollars(getPriceCents());
     }
 }
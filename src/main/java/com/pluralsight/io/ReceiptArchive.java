@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.io;
+
+import com.pluralsight.io.ReceiptStore.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.time.*;
+import java.time.format.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.regex.*;
+import java.util.zip.*;
+
+/**
+ * Long-term storage for receipts from days which have ended.
+ * Each day is kept in its own file as a series of independently compressed blocks,
+ * followed by a sparse index giving the time of the first receipt in each block.
+ * Reading a span of time only inflates the blocks which overlap it.
+ */
+public final class ReceiptArchive {
+    private static final int MAGIC = 0x44434152;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    private static final int BLOCK_HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES + Long.BYTES;
+    private static final int FOOTER_SIZE = Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int RECORD_HEADER_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final String SUFFIX = ".arc";
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final Pattern TEXT_RECEIPT = Pattern.compile("(\\d{8}-\\d{6})(?:-(\\d+))?\\.txt");
+    private static final DateTimeFormatter TEXT_RECEIPT_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final File directory;
+    private final ZoneId zone;
+
+    /**
+     * Opens an archive in the system time zone, creating it if it does not exist.
+     *
+     * @param directory The directory holding the archive
+     * @throws UncheckedIOException If the directory could not be created
+     */
+    public ReceiptArchive(File directory) {
+        this(directory, ZoneId.systemDefault());
+    }
+
+    /**
+     * Opens an archive, creating it if it does not exist.
+     *
+     * @param directory The directory holding the archive
+     * @param zone      The time zone which decides where days begin and end
+     * @throws UncheckedIOException If the directory could not be created
+     */
+    public ReceiptArchive(File directory, ZoneId zone) {
+        this.directory = directory;
+        this.zone = zone;
+        try {
+            Files.createDirectories(directory.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create receipt archive \"" + directory.getPath() + "\"!", e);
+        }
+    }
+
+    /**
+     * Moves every receipt sold before the given day out of a store and into the archive.
+     * Receipts from days already in the archive, such as ones imported from text files, are merged into them,
+     * skipping any the archive already holds.
+     *
+     * @param store The store to archive receipts from
+     * @param today The first day to keep in the store
+     * @return The number of receipts archived
+     * @throws UncheckedIOException If the store could not be read or the archive could not be written
+     */
+    public int rollClosedDays(ReceiptStore store, LocalDate today) {
+        var oldest = store.get(store.getFirstId());
+        if (oldest.isEmpty())
+            return 0;
+
+        var archived = 0;
+        var lastId = 0L;
+        for (var day = LocalDate.ofInstant(oldest.get().time(), zone); day.isBefore(today); day = day.plusDays(1)) {
+            var receipts = store.findBetween(startOf(day), startOf(day.plusDays(1)));
+            if (receipts.isEmpty())
+                continue;
+            archived += fileFor(day).exists() ? merge(day, receipts) : write(day, receipts);
+            lastId = receipts.get(receipts.size() - 1).id();
+        }
+        store.deleteThrough(lastId);
+        return archived;
+    }
+
+    /**
+     * Moves receipt text files, as written by {@link ReceiptStore#export(long, File)}
+     * or by older versions of the shop, into the archive.
+     * Files from days already in the archive are left alone.
+     *
+     * @param textDirectory The directory holding the files
+     * @param today         The first day to leave as files
+     * @return The number of receipts archived
+     * @throws UncheckedIOException If a file could not be read or the archive could not be written
+     */
+    public int importTextFiles(File textDirectory, LocalDate today) {
+        var byDay = new TreeMap<LocalDate, List<StoredReceipt>>();
+        var files = new HashMap<LocalDate, List<File>>();
+        var listed = textDirectory.listFiles();
+        for (var file : listed == null ? new File[0] : listed) {
+            var matcher = TEXT_RECEIPT.matcher(file.getName());
+            if (!matcher.matches())
+                continue;
+            var time = LocalDateTime.parse(matcher.group(1), TEXT_RECEIPT_TIME);
+            var day = time.toLocalDate();
+            if (!day.isBefore(today) || fileFor(day).exists())
+                continue;
+            var id = matcher.group(2) == null ? 0 : Long.parseLong(matcher.group(2));
+            try {
+                var text = Files.readString(file.toPath());
+                byDay.computeIfAbsent(day, d -> new ArrayList<>()).add(new StoredReceipt(id, time.atZone(zone).toInstant(), text));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read receipt file \"" + file.getPath() + "\"!", e);
+            }
+            files.computeIfAbsent(day, d -> new ArrayList<>()).add(file);
+        }
+
+        var archived = 0;
+        for (var entry : byDay.entrySet()) {
+            var receipts = entry.getValue();
+            receipts.sort(Comparator.comparing(StoredReceipt::time).thenComparingLong(StoredReceipt::id));
+            archived += write(entry.getKey(), receipts);
+            for (var file : files.get(entry.getKey()))
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+        }
+        return archived;
+    }
+
+    /**
+     * Streams back the receipts sold in a span of time, oldest first.
+     *
+     * @param from   The start of the span, inclusive
+     * @param to     The end of the span, exclusive
+     * @param action What to do with each receipt
+     * @throws UncheckedIOException If the archive could not be read
+     */
+    public void forEachBetween(Instant from, Instant to, Consumer<? super StoredReceipt> action) {
+        var first = DAY_FORMAT.format(LocalDate.ofInstant(from, zone)) + SUFFIX;
+        var last = DAY_FORMAT.format(LocalDate.ofInstant(to, zone)) + SUFFIX;
+        // Day files sort by name in date order.
+        var files = directory.list((dir, name) -> name.endsWith(SUFFIX) && name.compareTo(first) >= 0 && name.compareTo(last) <= 0);
+        if (files == null)
+            return;
+        Arrays.sort(files);
+        for (var name : files)
+            read(new File(directory, name), from.toEpochMilli(), to.toEpochMilli(), action);
+    }
+
+    /**
+     * @param from The start of the span, inclusive
+     * @param to   The end of the span, exclusive
+     * @return The receipts sold in that span, oldest first
+     * @throws UncheckedIOException If the archive could not be read
+     * @see #forEachBetween(Instant, Instant, Consumer)
+     */
+    public List<StoredReceipt> findBetween(Instant from, Instant to) {
+        var receipts = new ArrayList<StoredReceipt>();
+        forEachBetween(from, to, receipts::add);
+        return receipts;
+    }
+
+    /**
+     * @param day A day
+     * @return Whether that day has been archived
+     */
+    public boolean hasDay(LocalDate day) {
+        return fileFor(day).exists();
+    }
+
+    /**
+     * @return The time zone which decides where days begin and end
+     */
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    private Instant startOf(LocalDate day) {
+        return day.atStartOfDay(zone).toInstant();
+    }
+
+    private File fileFor(LocalDate day) {
+        return new File(directory, DAY_FORMAT.format(day) + SUFFIX);
+    }
+
+    /**
+     * Adds receipts to a day already in the archive, rewriting its file.
+     * Receipts with the same id as one already archived are skipped,
+     * except for id 0, which receipt text files from older versions of the shop all have.
+     *
+     * @return The number of receipts added
+     */
+    private int merge(LocalDate day, List<StoredReceipt> receipts) {
+        var file = fileFor(day);
+        var merged = new ArrayList<StoredReceipt>();
+        read(file, Long.MIN_VALUE, Long.MAX_VALUE, merged::add);
+        var ids = new HashSet<Long>();
+        for (var receipt : merged)
+            ids.add(receipt.id());
+        var added = 0;
+        for (var receipt : receipts)
+            if (receipt.id() == 0 || !ids.contains(receipt.id())) {
+                merged.add(receipt);
+                added++;
+            }
+        if (added == 0)
+            return 0;
+        merged.sort(Comparator.comparing(StoredReceipt::time).thenComparingLong(StoredReceipt::id));
+        write(day, merged);
+        return added;
+    }
+
+    private int write(LocalDate day, List<StoredReceipt> receipts) {
+        var file = fileFor(day);
+        var tempFile = new File(directory, file.getName() + ".tmp");
+        var deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (var fos = new FileOutputStream(tempFile);
+             var out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            var offset = (long) HEADER_SIZE;
+
+            var index = new ByteArrayOutputStream();
+            var indexOut = new DataOutputStream(index);
+            var block = new ByteArrayOutputStream(BLOCK_SIZE);
+            var blockOut = new DataOutputStream(block);
+            var compressed = new byte[BLOCK_SIZE];
+            var blocks = 0;
+            for (//noinspection ReassignedVariable
+                int i = 0; i < receipts.size(); i++) {
+                var receipt = receipts.get(i);
+                if (block.size() == 0) {
+                    indexOut.writeLong(receipt.time().toEpochMilli());
+                    indexOut.writeLong(offset);
+                    blocks++;
+                }
+                var bytes = receipt.data();
+                blockOut.writeLong(receipt.id());
+                blockOut.writeLong(receipt.time().toEpochMilli());
+                blockOut.writeInt(bytes.length);
+                blockOut.write(bytes);
+
+                if (block.size() >= BLOCK_SIZE || i == receipts.size() - 1) {
+                    deflater.reset();
+                    deflater.setInput(block.toByteArray());
+                    deflater.finish();
+                    var length = 0;
+                    while (!deflater.finished()) {
+                        if (length == compressed.length)
+                            compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                        length += deflater.deflate(compressed, length, compressed.length - length);
+                    }
+                    out.writeInt(block.size());
+                    out.writeInt(length);
+                    out.write(compressed, 0, length);
+                    offset += BLOCK_HEADER_SIZE + length;
+                    block.reset();
+                }
+            }
+
+            index.writeTo(out);
+            out.writeLong(offset);
+            out.writeInt(blocks);
+            out.writeInt(MAGIC);
+            out.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write receipt archive \"" + file.getPath() + "\"!", e);
+        } finally {
+            deflater.end();
+        }
+
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write receipt archive \"" + file.getPath() + "\"!", e);
+        }
+        return receipts.size();
+    }
+
+    private static void read(File file, long start, long end, Consumer<? super StoredReceipt> action) {
+        var inflater = new Inflater();
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            var footer = readFully(channel, channel.size() - FOOTER_SIZE, FOOTER_SIZE);
+            var indexOffset = footer.getLong();
+            var blocks = footer.getInt();
+            if (footer.getInt() != MAGIC)
+                throw new IOException("Not a receipt archive");
+            var index = readFully(channel, indexOffset, blocks * INDEX_ENTRY_SIZE);
+
+            // The last block starting before the span may still hold receipts from inside it.
+            var low = 0;
+            var high = blocks;
+            while (low < high) {
+                var mid = (low + high) >>> 1;
+                if (index.getLong(mid * INDEX_ENTRY_SIZE) < start)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+
+            for (//noinspection ReassignedVariable
+                int blockNum = Math.max(low - 1, 0); blockNum < blocks; blockNum++) {
+                if (index.getLong(blockNum * INDEX_ENTRY_SIZE) >= end)
+                    return;
+                var offset = index.getLong(blockNum * INDEX_ENTRY_SIZE + Long.BYTES);
+                var header = readFully(channel, offset, BLOCK_HEADER_SIZE);
+                var size = header.getInt();
+                var compressed = readFully(channel, offset + BLOCK_HEADER_SIZE, header.getInt());
+
+                var block = ByteBuffer.allocate(size);
+                inflater.reset();
+                inflater.setInput(compressed);
+                while (block.hasRemaining() && !inflater.finished())
+                    if (inflater.inflate(block) == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                        throw new IOException("Receipt archive block at " + offset + " is corrupt");
+                block.flip();
+
+                while (block.remaining() >= RECORD_HEADER_SIZE) {
+                    var id = block.getLong();
+                    var time = block.getLong();
+                    var length = block.getInt();
+                    if (time >= end)
+                        return;
+                    if (time < start) {
+                        block.position(block.position() + length);
+                        continue;
+                    }
+                    var data = Arrays.copyOfRange(block.array(), block.position(), block.position() + length);
+                    block.position(block.position() + length);
+                    action.accept(new StoredReceipt(id, Instant.ofEpochMilli(time), data));
+                }
+            }
+        } catch (IOException | DataFormatException e) {
+            throw new UncheckedIOException("Could not read receipt archive \"" + file.getPath() + "\"!",
+                e instanceof IOException io ? io : new IOException(e));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        var buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Receipt archive ended early");
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.io;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Encodes the tree of line items on a receipt into a compact binary form, and decodes it again.
+ * An encoded receipt starts with a zero byte, which rendered text never does, and a format version.
+ * Then comes a table of every distinct item name, each written once however often it appears,
+ * followed by the items in pre-order, each as its name's place in the table, its depth and its own price.
+ * All numbers are variable-length, so a typical item takes three or four bytes.
+ */
+final class ReceiptCodec {
+    private static final byte MARKER = 0;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int VARINT_SHIFT = 7;
+    private static final int VARINT_PAYLOAD = 0x7F;
+    private static final int VARINT_MORE = 0x80;
+
+    private ReceiptCodec() {
+    }
+
+    /**
+     * @param data A stored receipt
+     * @return Whether the receipt is encoded, rather than rendered text
+     */
+    static boolean isEncoded(byte[] data) {
+        return data.length > 0 && data[0] == MARKER;
+    }
+
+    /**
+     * @param nodes  The items, flattened in pre-order
+     * @param depths The depth of each item
+     * @param count  The number of items
+     * @return The encoded items
+     */
+    static byte[] encode(LineItem[] nodes, int[] depths, int count) {
+        var names = new HashMap<String, Integer>();
+        var table = new ByteArrayOutputStream();
+        var items = new ByteArrayOutputStream();
+        for (//noinspection ReassignedVariable
+            int i = 0; i < count; i++) {
+            var name = nodes[i].getName();
+            var slot = names.get(name);
+            if (slot == null) {
+                slot = names.size();
+                names.put(name, slot);
+                var bytes = name.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(table, bytes.length);
+                table.writeBytes(bytes);
+            }
+            writeVarLong(items, slot);
+            writeVarLong(items, depths[i]);
+            // Zigzag, so that small discounts stay small.
+            var price = nodes[i].getPriceCents();
+            writeVarLong(items, price << 1 ^ price >> 63);
+        }
+
+        var out = new ByteArrayOutputStream(2 + table.size() + items.size() + Integer.BYTES);
+        out.write(MARKER);
+        out.write(FORMAT_VERSION);
+        writeVarLong(out, names.size());
+        out.writeBytes(table.toByteArray());
+        out.writeBytes(items.toByteArray());
+        return out.toByteArray();
+    }
+
+    /**
+     * @param data An encoded receipt
+     * @return The top item on the receipt
+     * @throws IllegalArgumentException If the data is not an encoded receipt
+     */
+    static LineItem decode(byte[] data) {
+        if (!isEncoded(data) || data.length < 2)
+            throw new IllegalArgumentException("Not an encoded receipt");
+        if (data[1] != FORMAT_VERSION)
+            throw new IllegalArgumentException("Unknown receipt format " + data[1]);
+
+        var in = new Cursor(data, 2);
+        var names = new String[(int) in.nextVarLong()];
+        for (//noinspection ReassignedVariable
+            int i = 0; i < names.length; i++) {
+            var length = (int) in.nextVarLong();
+            in.require(length);
+            names[i] = new String(data, in.position, length, StandardCharsets.UTF_8);
+            in.position += length;
+        }
+
+        // Each item's parent is the last item seen one level up.
+        List<DecodedItem> path = new ArrayList<>();
+        DecodedItem root = null;
+        while (in.position < data.length) {
+            var slot = (int) in.nextVarLong();
+            var depth = (int) in.nextVarLong();
+            var zigzag = in.nextVarLong();
+            if (slot >= names.length || depth > path.size() || root != null && depth == 0 || root == null && depth != 0)
+                throw new IllegalArgumentException("Malformed encoded receipt");
+
+            var item = new DecodedItem(names[slot], zigzag >>> 1 ^ -(zigzag & 1));
+            if (depth == 0)
+                root = item;
+            else
+                path.get(depth - 1).subItems.add(item);
+            while (path.size() > depth)
+                path.remove(path.size() - 1);
+            path.add(item);
+        }
+        if (root == null)
+            throw new IllegalArgumentException("Malformed encoded receipt");
+        return root;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        //noinspection ReassignedVariable
+        var remaining = value;
+        while ((remaining & ~VARINT_PAYLOAD) != 0) {
+            out.write((int) (remaining & VARINT_PAYLOAD) | VARINT_MORE);
+            remaining >>>= VARINT_SHIFT;
+        }
+        out.write((int) remaining);
+    }
+
+    private static final class Cursor {
+        private final byte[] data;
+        private int position;
+
+        private Cursor(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        private void require(int length) {
+            if (length < 0 || position + length > data.length)
+                throw new IllegalArgumentException("Malformed encoded receipt");
+        }
+
+        private long nextVarLong() {
+            var value = 0L;
+            for (//noinspection ReassignedVariable
+                int shift = 0; shift < Long.SIZE; shift += VARINT_SHIFT) {
+                require(1);
+                var b = data[position++];
+                value |= (long) (b & VARINT_PAYLOAD) << shift;
+                if ((b & VARINT_MORE) == 0)
+                    return value;
+            }
+            throw new IllegalArgumentException("Malformed encoded receipt");
+        }
+    }
+
+    /**
+     * A line item read back from an encoded receipt.
+     */
+    private static final class DecodedItem implements LineItem {
+        private final String name;
+        private final long priceCents;
+        private final List<LineItem> subItems;
+
+        private DecodedItem(String name, long priceCents) {
+            this.name = name;
+            this.priceCents = priceCents;
+            subItems = new ArrayList<>();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getPriceCents() {
+            return priceCents;
+        }
+
+        @Override
+        public List<LineItem> getSubItems() {
+            return Collections.unmodifiableList(subItems);
+        }
+    }
+}
@@ -0,0 +1,553 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.io;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+
+/**
+ * An append-only store of sold receipts.
+ * Receipts are appended to rolling segment files, each paired with an index of fixed-size entries,
+ * so any receipt can be found by its sequence id or by the time it was sold without reading the others.
+ * Only the active segment is synced as receipts are added, and its index once it is full;
+ * every segment's index is checked against the segment, and rebuilt from it if the two disagree after a crash,
+ * when the store is opened.
+ * Receipts are normally stored encoded, as by {@link Receipt#encode()}, but rendered text is accepted too.
+ */
+public final class ReceiptStore implements Closeable {
+    /**
+     * The size past which a new segment is started.
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 1 << 20;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    // The same names receipts had when each was written to its own file.
+    private static final String TEXT_FILE_NAME = "%tY%<tm%<td-%<tH%<tM%<tS";
+    private static final int HEADER_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES + Long.BYTES;
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final File directory;
+    private final long segmentSize;
+    private final NavigableMap<Long, Segment> segments;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer entry;
+    private ByteBuffer record;
+    private Segment active;
+    private long nextId;
+    private long lastTime;
+
+    /**
+     * Opens a store with the default segment size, creating it if it does not exist.
+     *
+     * @param directory The directory holding the store
+     * @throws UncheckedIOException If the store could not be opened
+     */
+    public ReceiptStore(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens a store, creating it if it does not exist.
+     *
+     * @param directory   The directory holding the store
+     * @param segmentSize The size past which a new segment is started
+     * @throws UncheckedIOException If the store could not be opened
+     */
+    public ReceiptStore(File directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        segments = new TreeMap<>();
+        encoder = StandardCharsets.UTF_8.newEncoder();
+        entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        record = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+        try {
+            Files.createDirectories(directory.toPath());
+            var files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+            for (var file : files == null ? new File[0] : files) {
+                var name = file.getName();
+                var firstId = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(firstId, new Segment(directory, firstId));
+            }
+            if (segments.isEmpty())
+                segments.put(1L, new Segment(directory, 1));
+
+            // A crash may have cut short the index of a segment that had only just filled up, not just the active one's.
+            for (var segment : segments.headMap(segments.lastKey()).values()) {
+                segment.open();
+                segment.close();
+            }
+            active = segments.lastEntry().getValue();
+            active.open();
+            nextId = active.firstId + active.count;
+            if (active.count > 0)
+                lastTime = active.timeAt(active.count - 1);
+            else if (segments.size() > 1) {
+                var previous = segments.lowerEntry(active.firstId).getValue();
+                lastTime = previous.lastTime();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open receipt store \"" + directory.getPath() + "\"!", e);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Unexpected segment in receipt store \"" + directory.getPath() + "\"", e);
+        }
+    }
+
+    /**
+     * Encodes and stores a receipt.
+     *
+     * @param receipt The receipt to store
+     * @return The sequence id given to the receipt
+     * @throws UncheckedIOException If the receipt could not be stored
+     */
+    public synchronized long append(Receipt receipt) {
+        return appendAllEncoded(List.of(receipt.encode()))[0];
+    }
+
+    /**
+     * Stores the text of a receipt.
+     *
+     * @param receipt The text to store
+     * @return The sequence id given to the receipt
+     * @throws UncheckedIOException If the receipt could not be stored
+     */
+    public synchronized long append(CharSequence receipt) {
+        try {
+            encode(receipt);
+            var id = write();
+            active.sync();
+            return id;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to receipt store \"" + directory.getPath() + "\"!", e);
+        }
+    }
+
+    /**
+     * Stores the text of several receipts, syncing them to disk together.
+     *
+     * @param receipts The text to store
+     * @return The sequence ids given to the receipts, in order
+     * @throws UncheckedIOException If the receipts could not be stored
+     */
+    public synchronized long[] appendAll(List<? extends CharSequence> receipts) {
+        var ids = new long[receipts.size()];
+        try {
+            for (//noinspection ReassignedVariable
+                int i = 0; i < ids.length; i++) {
+                encode(receipts.get(i));
+                ids[i] = write();
+            }
+            active.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to receipt store \"" + directory.getPath() + "\"!", e);
+        }
+        return ids;
+    }
+
+    /**
+     * Stores several encoded receipts, syncing them to disk together.
+     *
+     * @param receipts The receipts, as encoded by {@link Receipt#encode()}
+     * @return The sequence ids given to the receipts, in order
+     * @throws UncheckedIOException If the receipts could not be stored
+     */
+    public synchronized long[] appendAllEncoded(List<byte[]> receipts) {
+        var ids = new long[receipts.size()];
+        try {
+            for (//noinspection ReassignedVariable
+                int i = 0; i < ids.length; i++) {
+                var data = receipts.get(i);
+                if (record.capacity() < HEADER_SIZE + data.length)
+                    record = ByteBuffer.allocate(Math.max(record.capacity() * 2, HEADER_SIZE + data.length));
+                record.clear().position(HEADER_SIZE);
+                record.put(data).flip();
+                ids[i] = write();
+            }
+            active.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to receipt store \"" + directory.getPath() + "\"!", e);
+        }
+        return ids;
+    }
+
+    /**
+     * Writes out the record being built, whose body is already in place after its header.
+     */
+    private long write() throws IOException {
+        // Times never go backwards, so that receipts can be searched by time.
+        var time = Math.max(System.currentTimeMillis(), lastTime);
+        var id = nextId;
+        var length = record.limit() - HEADER_SIZE;
+        record.putLong(0, id).putLong(Long.BYTES, time).putInt(2 * Long.BYTES, length);
+
+        if (active.size > 0 && active.size + record.limit() > segmentSize) {
+            active.close();
+            active = new Segment(directory, id);
+            active.open();
+            segments.put(id, active);
+        }
+        active.append(record, time, entry);
+
+        nextId = id + 1;
+        lastTime = time;
+        return id;
+    }
+
+    /**
+     * @param id The sequence id of a receipt
+     * @return The receipt with that id, if there is one
+     * @throws UncheckedIOException If the store could not be read
+     */
+    public synchronized Optional<StoredReceipt> get(long id) {
+        if (id < getFirstId() || id >= nextId)
+            return Optional.empty();
+        var segment = segments.floorEntry(id).getValue();
+        try {
+            return Optional.of(segment.read((int) (id - segment.firstId)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read receipt store \"" + directory.getPath() + "\"!", e);
+        }
+    }
+
+    /**
+     * Finds the receipts sold in a span of time.
+     *
+     * @param from The start of the span, inclusive
+     * @param to   The end of the span, exclusive
+     * @return The receipts sold in that span, oldest first
+     * @throws UncheckedIOException If the store could not be read
+     */
+    public synchronized List<StoredReceipt> findBetween(Instant from, Instant to) {
+        var receipts = new ArrayList<StoredReceipt>();
+        var end = to.toEpochMilli();
+        try {
+            for (//noinspection ReassignedVariable
+                long id = firstIdAtOrAfter(from.toEpochMilli()); id < nextId; id++) {
+                var segment = segments.floorEntry(id).getValue();
+                var receipt = segment.read((int) (id - segment.firstId));
+                if (receipt.time().toEpochMilli() >= end)
+                    break;
+                receipts.add(receipt);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read receipt store \"" + directory.getPath() + "\"!", e);
+        }
+        return receipts;
+    }
+
+    /**
+     * Writes a receipt out as its own text file, named for the second it was sold.
+     * If another receipt was sold in the same second, its id is added to the name.
+     *
+     * @param id        The sequence id of the receipt
+     * @param directory The directory to write the file to
+     * @return The file written
+     * @throws NoSuchElementException If there is no receipt with that id
+     * @throws UncheckedIOException   If the file could not be written
+     */
+    public synchronized File export(long id, File directory) {
+        var receipt = get(id).orElseThrow(() -> new NoSuchElementException("No receipt with id " + id));
+        var name = textFileName(receipt.time());
+        var previous = get(id - 1);
+        if (previous.isPresent() && name.equals(textFileName(previous.get().time())))
+            name += "-" + id;
+
+        var file = new File(directory, name + ".txt");
+        try (FileWriter fw = new FileWriter(file)) {
+            fw.write(receipt.text());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not export receipt file \"" + file.getPath() + "\"!", e);
+        }
+        return file;
+    }
+
+    private static String textFileName(Instant time) {
+        return TEXT_FILE_NAME.formatted(LocalDateTime.ofInstant(time, ZoneId.systemDefault()));
+    }
+
+    /**
+     * Writes every receipt out as its own text file.
+     *
+     * @param directory The directory to write the files to
+     * @return The number of files written
+     * @throws UncheckedIOException If a file could not be written
+     * @see #export(long, File)
+     */
+    public synchronized int exportAll(File directory) {
+        var firstId = getFirstId();
+        for (//noinspection ReassignedVariable
+            long id = firstId; id < nextId; id++)
+            export(id, directory);
+        return (int) (nextId - firstId);
+    }
+
+    /**
+     * @return The sequence id of the oldest receipt still in the store, or of the next receipt if it is empty
+     */
+    public synchronized long getFirstId() {
+        return segments.firstKey();
+    }
+
+    /**
+     * Deletes whole segments holding only receipts up to and including the given id,
+     * e.g. once they have been archived.
+     * Receipts sharing a segment with later ones are kept until the rest of their segment can go too.
+     *
+     * @param id The sequence id of the newest receipt which may be deleted
+     * @return The number of receipts deleted
+     * @throws UncheckedIOException If a segment could not be deleted
+     */
+    public synchronized int deleteThrough(long id) {
+        var deleted = 0;
+        for (var iterator = segments.values().iterator(); iterator.hasNext(); ) {
+            var segment = iterator.next();
+            if (segment == active || segment.firstId + segment.count - 1 > id)
+                break;
+            try {
+                Files.delete(segment.log.toPath());
+                Files.deleteIfExists(segment.index.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not delete receipt store segment \"" + segment.log.getPath() + "\"!", e);
+            }
+            iterator.remove();
+            deleted += segment.count;
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.close();
+    }
+
+    private long firstIdAtOrAfter(long time) throws IOException {
+        // Segments are in time order as well as id order, so the search can skip straight to one.
+        var segment = segments.firstEntry().getValue();
+        for (var candidate : segments.descendingMap().values()) {
+            if (candidate.count > 0 && candidate.timeAt(0) < time) {
+                segment = candidate;
+                break;
+            }
+        }
+        var low = 0;
+        var high = segment.count;
+        while (low < high) {
+            var mid = (low + high) >>> 1;
+            if (segment.timeAt(mid) < time)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return segment.firstId + low;
+    }
+
+    private void encode(CharSequence receipt) {
+        while (true) {
+            encoder.reset();
+            record.clear().position(HEADER_SIZE);
+            var result = encoder.encode(CharBuffer.wrap(receipt), record, true);
+            if (!result.isOverflow())
+                result = encoder.flush(record);
+            if (!result.isOverflow()) {
+                record.flip();
+                return;
+            }
+            record = ByteBuffer.allocate(record.capacity() * 2);
+        }
+    }
+
+    /**
+     * A receipt read back from the store.
+     *
+     * @param id   The sequence id of the receipt
+     * @param time When the receipt was stored
+     * @param data The receipt as stored, either encoded or as rendered text
+     */
+    @SuppressWarnings("ArrayRecordComponent")
+    public record StoredReceipt(long id, Instant time, byte[] data) {
+        /**
+         * @param id   The sequence id of the receipt
+         * @param time When the receipt was stored
+         * @param text The rendered text of the receipt
+         */
+        public StoredReceipt(long id, Instant time, String text) {
+            this(id, time, text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @return Whether the receipt was stored encoded, so that its items can be read with {@link #receipt()}
+         */
+        public boolean isEncoded() {
+            return Receipt.isEncoded(data);
+        }
+
+        /**
+         * @return The items on the receipt
+         * @throws IllegalStateException If the receipt was stored as rendered text
+         */
+        public Receipt receipt() {
+            if (!isEncoded())
+                throw new IllegalStateException("Receipt " + id + " was stored as text");
+            return Receipt.decode(data);
+        }
+
+        /**
+         * @return The text of the receipt, rendering it if it was stored encoded
+         */
+        public String text() {
+            return isEncoded() ? receipt().toString() : new String(data, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class Segment {
+        private final long firstId;
+        private final File log;
+        private final File index;
+        private FileChannel logChannel;
+        private FileChannel indexChannel;
+        private int count;
+        private long size;
+
+        private Segment(File directory, long firstId) {
+            this.firstId = firstId;
+            var name = "%020d".formatted(firstId);
+            log = new File(directory, name + SEGMENT_SUFFIX);
+            index = new File(directory, name + INDEX_SUFFIX);
+            count = (int) (index.length() / INDEX_ENTRY_SIZE);
+            size = log.length();
+        }
+
+        /**
+         * Opens the segment for appending, repairing it if the last run ended mid-write.
+         */
+        private void open() throws IOException {
+            logChannel = FileChannel.open(log.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            indexChannel = FileChannel.open(index.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            size = logChannel.size();
+            count = (int) (indexChannel.size() / INDEX_ENTRY_SIZE);
+
+            // Drop index entries pointing past the end of the segment, or at the wrong record.
+            var end = 0L;
+            var header = ByteBuffer.allocate(HEADER_SIZE);
+            while (count > 0) {
+                var offset = offsetAt(count - 1);
+                header.clear();
+                if (offset + HEADER_SIZE <= size) {
+                    readFully(logChannel, header, offset);
+                    end = offset + HEADER_SIZE + header.getInt(2 * Long.BYTES);
+                    if (end <= size && header.getLong(0) == firstId + count - 1)
+                        break;
+                }
+                count--;
+                end = 0;
+            }
+            indexChannel.truncate((long) count * INDEX_ENTRY_SIZE);
+
+            // Index any whole records which were written without their entries, and drop a torn one.
+            var entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+            while (end + HEADER_SIZE <= size) {
+                header.clear();
+                readFully(logChannel, header, end);
+                var next = end + HEADER_SIZE + header.getInt(2 * Long.BYTES);
+                if (header.getLong(0) != firstId + count || next > size)
+                    break;
+                entry.clear();
+                entry.putLong(header.getLong(Long.BYTES)).putLong(end).flip();
+                indexChannel.write(entry, (long) count * INDEX_ENTRY_SIZE);
+                count++;
+                end = next;
+            }
+            logChannel.truncate(end);
+            logChannel.force(false);
+            indexChannel.force(false);
+            size = end;
+        }
+
+        private void append(ByteBuffer record, long time, ByteBuffer entry) throws IOException {
+            var offset = size;
+            var length = record.remaining();
+            while (record.hasRemaining())
+                logChannel.write(record, offset + length - record.remaining());
+
+            entry.clear();
+            entry.putLong(time).putLong(offset).flip();
+            while (entry.hasRemaining())
+                indexChannel.write(entry, (long) count * INDEX_ENTRY_SIZE + INDEX_ENTRY_SIZE - entry.remaining());
+            size += length;
+            count++;
+        }
+
+        private StoredReceipt read(int n) throws IOException {
+            if (logChannel != null)
+                return read(n, logChannel);
+            try (var channel = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+                return read(n, channel);
+            }
+        }
+
+        private StoredReceipt read(int n, FileChannel channel) throws IOException {
+            var offset = offsetAt(n);
+            var header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, offset);
+            var body = ByteBuffer.allocate(header.getInt(2 * Long.BYTES));
+            readFully(channel, body, offset + HEADER_SIZE);
+            return new StoredReceipt(header.getLong(0), Instant.ofEpochMilli(header.getLong(Long.BYTES)), body.array());
+        }
+
+        private long timeAt(int n) throws IOException {
+            return readIndex(n).getLong(0);
+        }
+
+        private long offsetAt(int n) throws IOException {
+            return readIndex(n).getLong(Long.BYTES);
+        }
+
+        private long lastTime() throws IOException {
+            return count == 0 ? 0 : timeAt(count - 1);
+        }
+
+        private ByteBuffer readIndex(int n) throws IOException {
+            var buffer = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+            if (indexChannel != null)
+                readFully(indexChannel, buffer, (long) n * INDEX_ENTRY_SIZE);
+            else
+                try (var channel = FileChannel.open(index.toPath(), StandardOpenOption.READ)) {
+                    readFully(channel, buffer, (long) n * INDEX_ENTRY_SIZE);
+                }
+            return buffer;
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining())
+                if (channel.read(buffer, position + buffer.position()) < 0)
+                    throw new EOFException("Receipt store segment ended early");
+        }
+
+        private void sync() throws IOException {
+            logChannel.force(false);
+        }
+
+        private void close() throws IOException {
+            if (logChannel == null)
+                return;
+            // Nothing syncs a segment once it is sealed, so its index must be made durable along with it.
+            logChannel.force(false);
+            indexChannel.force(false);
+            logChannel.close();
+            indexChannel.close();
+            //noinspection AssignmentToNull
+            logChannel = null;
+            //noinspection AssignmentToNull
+            indexChannel = null;
+        }
+    }
+}
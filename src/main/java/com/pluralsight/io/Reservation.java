@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.io;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Holds stock for the {@link InventoriedLineItem}s in an in-progress cart.
+ * Held stock is converted to consumption by {@link #commit()} and returned by {@link #cancel()}.
+ * If the reservation is not touched for its time-to-live, the stock is returned automatically;
+ * it is taken back on the next touch if it is still available.
+ */
+public final class Reservation {
+    private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "reservation-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Duration ttl;
+    private final Map<InventoriedLineItem, Hold> holds;
+    private ScheduledFuture<?> expiry;
+    // When the reservation expires, by System.nanoTime().
+    // An expiry already under way checks it, since cancelling can't stop it.
+    private long deadline;
+    private boolean expired;
+
+    /**
+     * @param ttl How long the reservation lasts without being touched
+     */
+    public Reservation(Duration ttl) {
+        this.ttl = ttl;
+        holds = new IdentityHashMap<>();
+        expired = false;
+    }
+
+    /**
+     * Reserves stock for the given line items, or adjusts the stock already reserved for them
+     * if their amounts have changed since they were last held.
+     * Either every item is held or none are.
+     *
+     * @param items The line items to hold stock for
+     * @return Whether there was enough stock
+     */
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    public synchronized boolean hold(Collection<? extends InventoriedLineItem> items) {
+        if (!revive())
+            return false;
+
+        var taken = new ArrayList<Hold>();
+        var returned = new ArrayList<Hold>();
+        var updated = new IdentityHashMap<InventoriedLineItem, Hold>();
+        for (var item : items) {
+            var hold = new Hold(item.getInventoried(), item.getAmount());
+            var old = holds.get(item);
+            if (hold.equals(old))
+                continue;
+
+            Hold needed;
+            if (old != null && old.inventoried() == hold.inventoried()) {
+                if (hold.amount() < old.amount()) {
+                    returned.add(new Hold(old.inventoried(), old.amount() - hold.amount()));
+                    updated.put(item, hold);
+                    continue;
+                }
+                needed = new Hold(hold.inventoried(), hold.amount() - old.amount());
+            } else {
+                needed = hold;
+                if (old != null)
+                    returned.add(old);
+            }
+
+            if (!needed.inventoried().reserve(needed.amount())) {
+                taken.forEach(Hold::release);
+                return false;
+            }
+            taken.add(needed);
+            updated.put(item, hold);
+        }
+
+        holds.putAll(updated);
+        returned.forEach(Hold::release);
+        resetExpiry();
+        return true;
+    }
+
+    /**
+     * @param item The line item to hold stock for
+     * @return Whether there was enough stock
+     * @see #hold(Collection)
+     */
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    public boolean hold(InventoriedLineItem item) {
+        return hold(List.of(item));
+    }
+
+    /**
+     * Returns the stock held for the given line items.
+     *
+     * @param items The line items to stop holding stock for
+     */
+    public synchronized void drop(Collection<? extends InventoriedLineItem> items) {
+        for (var item : items) {
+            var old = holds.remove(item);
+            if (old != null && !expired)
+                old.release();
+        }
+        resetExpiry();
+    }
+
+    /**
+     * @param item The line item to stop holding stock for
+     * @see #drop(Collection)
+     */
+    public void drop(InventoriedLineItem item) {
+        drop(List.of(item));
+    }
+
+    /**
+     * @param item A line item
+     * @return Whether stock is held for that line item
+     */
+    public synchronized boolean isHolding(InventoriedLineItem item) {
+        return holds.containsKey(item);
+    }
+
+    /**
+     * Resets the time-to-live, taking back any stock that was returned because it expired.
+     *
+     * @return {@code false} if the reservation had expired and its stock is no longer available
+     */
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    public synchronized boolean renew() {
+        if (!revive())
+            return false;
+        resetExpiry();
+        return true;
+    }
+
+    /**
+     * Consumes all held stock and empties the reservation.
+     *
+     * @return {@code false} if the reservation had expired and its stock is no longer available
+     */
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    public synchronized boolean commit() {
+        if (!revive())
+            return false;
+        for (var hold : holds.values())
+            hold.inventoried().consumeReserved(hold.amount());
+        clear();
+        return true;
+    }
+
+    /**
+     * Returns all held stock and empties the reservation.
+     */
+    public synchronized void cancel() {
+        if (!expired)
+            holds.values().forEach(Hold::release);
+        clear();
+    }
+
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    private boolean revive() {
+        if (!expired)
+            return true;
+
+        var taken = new ArrayList<Hold>();
+        for (var hold : holds.values()) {
+            if (!hold.inventoried().reserve(hold.amount())) {
+                taken.forEach(Hold::release);
+                return false;
+            }
+            taken.add(hold);
+        }
+        expired = false;
+        return true;
+    }
+
+    private void resetExpiry() {
+        if (expiry != null)
+            expiry.cancel(false);
+        deadline = System.nanoTime() + ttl.toNanos();
+        expiry = holds.isEmpty() ? null : REAPER.schedule(this::expire, ttl.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void expire() {
+        // The reservation may have been touched while this waited for the lock.
+        if (expired || holds.isEmpty() || System.nanoTime() - deadline < 0)
+            return;
+        holds.values().forEach(Hold::release);
+        expired = true;
+        //noinspection AssignmentToNull
+        expiry = null;
+    }
+
+    private void clear() {
+        holds.clear();
+        expired = false;
+        if (expiry != null) {
+            expiry.cancel(false);
+            //noinspection AssignmentToNull
+            expiry = null;
+        }
+    }
+
+    private record Hold(Inventoried inventoried, int amount) {
+        void release() {
+            inventoried.release(amount);
+        }
+    }
+}
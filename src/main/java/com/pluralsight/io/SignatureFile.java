@@ -15,10 +15,17 @@ import java.util.*;
  * Represents a list of signature sandwiches backed by a file.
  */
 public final class SignatureFile {
-    private final List<SignatureSandwich> sandwiches;
-
-    private SignatureFile(List<SignatureSandwich> sandwiches) {
-        this.sandwiches = sandwiches;
+    @SuppressWarnings("FieldNamingConvention")
+    private final File file;
+    private final InventoriedFile<ToppingType> toppings;
+    private final InventoriedFile<BreadType> breads;
+    private volatile List<SignatureSandwich> sandwiches;
+
+    private SignatureFile(File file, InventoriedFile<ToppingType> toppings, InventoriedFile<BreadType> breads) {
+        this.file = file;
+        this.toppings = toppings;
+        this.breads = breads;
+        sandwiches = loadItems(file, toppings, breads);
     }
 
     /**
@@ -30,41 +37,27 @@ public final class SignatureFile {
      * @return A new list of signature sandwiches
      */
     public static SignatureFile load(File file, InventoriedFile<ToppingType> toppings, InventoriedFile<BreadType> breads) {
-        return new SignatureFile(loadItems(file, toppings, breads));
+        return new SignatureFile(file, toppings, breads);
     }
 
-    private static SignatureSandwich parseLine(String line, InventoriedFile<ToppingType> toppings, InventoriedFile<BreadType> breads) {
-        String[] parts = line.split("\\|");
-
-        var name = parts[0];
+    private static SignatureSandwich parseLine(FieldReader fields, InventoriedFile<ToppingType> toppings, InventoriedFile<BreadType> breads) {
+        var name = fields.nextString();
 
-        //noinspection OptionalGetWithoutIsPresent
+        var breadName = fields.nextString();
         var bread = breads
-            .getAllItems()
-            .stream()
-            .filter(br -> br.getName().equals(parts[1]))
-            .findFirst()
-            .get();
+            .findByName(breadName)
+            .orElseThrow(() -> new IllegalArgumentException("Unknown bread \"" + breadName + "\" in signature \"" + name + "\""));
 
-        var toasted = Boolean.parseBoolean(parts[2]);
-
-        //noinspection OptionalGetWithoutIsPresent
-        var sandwichToppings = Arrays.stream(parts)
-            .skip(3)
-            .map(part ->
-                toppings
-                    .getAllItems()
-                    .stream()
-                    .filter(tp -> tp.getName().equals(part))
-                    .findFirst()
-                    .get())
-            .toList();
+        var toasted = fields.nextBoolean();
 
         var sand = new SandwichItem(SandwichSize.FOUR_IN, bread);
-        for (//noinspection ReassignedVariable
-            int i = 0; i < sandwichToppings.size(); i++) {
-            ToppingType topping = sandwichToppings.get(i);
-            sand.addTopping(topping, sandwichToppings.indexOf(topping) != i);
+        var seen = new HashSet<ToppingType>();
+        while (fields.hasNext()) {
+            var part = fields.nextString();
+            var topping = toppings
+                .findByName(part)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown topping \"" + part + "\" in signature \"" + name + "\""));
+            sand.addTopping(topping, !seen.add(topping));
         }
 
         sand.setToasted(toasted);
@@ -73,22 +66,28 @@ public final class SignatureFile {
     }
 
     private static List<SignatureSandwich> loadItems(File file, InventoriedFile<ToppingType> toppings, InventoriedFile<BreadType> breads) {
-        try (FileReader fr = new FileReader(file);
-             BufferedReader br = new BufferedReader(fr)) {
-            return br.lines()
-                .filter(s -> !s.isEmpty() && !s.isBlank())
-                .map(line -> parseLine(line, toppings, breads))
-                .toList();
+        try (var fields = new FieldReader(new FileReader(file))) {
+            var sandwiches = new ArrayList<SignatureSandwich>();
+            while (fields.nextLine())
+                sandwiches.add(parseLine(fields, toppings, breads));
+            return sandwiches;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
+    /**
+     * Re-reads the file, swapping in the new list of signature sandwiches if it loads successfully.
+     * Sandwiches already taken from this file are unaffected.
+     */
+    public void reload() {
+        sandwiches = loadItems(file, toppings, breads);
+    }
+
     /**
      * @return All the signature sandwiches in this file
      */
     public List<SignatureSandwich> getSignatures() {
         return Collections.unmodifiableList(sandwiches);
     }
-
 }
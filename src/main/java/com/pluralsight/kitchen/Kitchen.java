@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.kitchen;
+
+import com.pluralsight.orders.*;
+
+import java.io.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Simulates the line that makes orders once they are paid for.
+ * Each order is broken into tasks: preparing the bread, toasting if asked for, and assembly for each sandwich,
+ * which happen one after the other, plus pouring each drink and bagging each extra, which can happen any time.
+ * <p>
+ * Every station has its own queue, and its own staff who work through it oldest first.
+ * When stealing is on, anyone whose own queue is empty helps out at whichever station has the longest queue.
+ * Tasks take as long as the {@link ServiceTimes} say, sped up by a time scale so a lunch rush can be run in seconds.
+ * Everything reported is in kitchen time, so it doesn't depend on the time scale.
+ */
+public final class Kitchen implements Closeable {
+    private static final Station[] STATIONS = Station.values();
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 1};
+
+    private final ServiceTimes times;
+    private final int[] staff;
+    private final boolean stealing;
+    private final double timeScale;
+    private final ReentrantLock lock;
+    private final Condition workArrived;
+    private final Condition allDone;
+    private final List<Deque<Task>> queues;
+    private final int[] longestQueues;
+    private final long[] done;
+    private final long[] helped;
+    // In kitchen time, unlike the latencies, which are kept in real time until reported.
+    private final long[] busyNanos;
+    private final List<Thread> workers;
+    private final long openedAt;
+    private long[] latencies;
+    private int completed;
+    private long submitted;
+    private long unfinished;
+    private boolean closed;
+
+    /**
+     * Opens the kitchen, with everyone at their stations.
+     *
+     * @param times     How long each task takes
+     * @param staff     How many people work at each station, none if left out
+     * @param stealing  Whether people help out at other stations when their own has nothing to do
+     * @param timeScale How much faster than real time the kitchen runs
+     * @throws IllegalArgumentException If there's no one to do some task, or the time scale isn't positive
+     */
+    public Kitchen(ServiceTimes times, Map<Station, Integer> staff, boolean stealing, double timeScale) {
+        if (!(timeScale > 0))
+            throw new IllegalArgumentException("The time scale must be positive");
+        this.times = times;
+        this.staff = new int[STATIONS.length];
+        staff.forEach((station, count) -> this.staff[station.ordinal()] = count);
+        this.stealing = stealing;
+        this.timeScale = timeScale;
+        var everyone = Arrays.stream(this.staff).sum();
+        for (var station : STATIONS)
+            if (this.staff[station.ordinal()] < 0 || everyone == 0 || !stealing && this.staff[station.ordinal()] == 0)
+                throw new IllegalArgumentException("There must be someone to work the " + station + " station");
+
+        lock = new ReentrantLock();
+        workArrived = lock.newCondition();
+        allDone = lock.newCondition();
+        queues = new ArrayList<>(STATIONS.length);
+        for (var ignored : STATIONS)
+            queues.add(new ArrayDeque<>());
+        longestQueues = new int[STATIONS.length];
+        done = new long[STATIONS.length];
+        helped = new long[STATIONS.length];
+        busyNanos = new long[STATIONS.length];
+        latencies = new long[64];
+        completed = 0;
+        submitted = 0;
+        unfinished = 0;
+        closed = false;
+        openedAt = System.nanoTime();
+
+        workers = new ArrayList<>(everyone);
+        for (var station : STATIONS)
+            for (//noinspection ReassignedVariable
+                int i = 0; i < this.staff[station.ordinal()]; i++) {
+                var name = "kitchen-" + station.name().toLowerCase() + "-" + (i + 1);
+                var worker = new Thread(() -> work(station), name);
+                worker.setDaemon(true);
+                workers.add(worker);
+                worker.start();
+            }
+    }
+
+    /**
+     * Sends a paid-for order to the line.
+     * The order is broken into tasks right away, so later changes to it are not made.
+     *
+     * @param order The order to make
+     * @return A future completed with how long the order took, in kitchen time, once it is ready
+     * @throws IllegalStateException If the kitchen has been closed
+     */
+    @SuppressWarnings("FeatureEnvy")
+    public CompletableFuture<Duration> submit(Order order) {
+        var ticket = new Ticket();
+        List<Task> tasks = new ArrayList<>();
+        for (var sandwich : order.getSandwiches()) {
+            var assembly = new Task(Station.ASSEMBLY,
+                times.assembly().plus(times.perTopping().multipliedBy(sandwich.getToppings().size())), ticket, null);
+            var next = sandwich.isToasted() ? new Task(Station.TOASTER, times.toasting(), ticket, assembly) : assembly;
+            tasks.add(new Task(Station.BREAD, times.bread(), ticket, next));
+            ticket.remaining += next == assembly ? 2 : 3;
+        }
+        for (var ignored : order.getDrinks())
+            tasks.add(new Task(Station.DRINKS, times.drink(), ticket, null));
+        for (var ignored : order.getExtras())
+            tasks.add(new Task(Station.EXTRAS, times.extra(), ticket, null));
+        ticket.remaining += tasks.size() - order.getSandwiches().size();
+
+        Duration latency = null;
+        lock.lock();
+        try {
+            if (closed)
+                throw new IllegalStateException("The kitchen has been closed");
+            submitted++;
+            ticket.submittedAt = System.nanoTime();
+            if (tasks.isEmpty())
+                latency = finish(ticket);
+            else {
+                unfinished++;
+                for (var task : tasks)
+                    enqueue(task);
+                workArrived.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Outside the lock, so whatever is waiting on the order can't hold up the line.
+        if (latency != null)
+            ticket.ready.complete(latency);
+        return ticket.ready;
+    }
+
+    /**
+     * Waits until every order sent to the kitchen so far is ready.
+     *
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void drain() throws InterruptedException {
+        lock.lock();
+        try {
+            while (unfinished > 0 && !closed)
+                allDone.await();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return How the line has done so far
+     */
+    @SuppressWarnings("FeatureEnvy")
+    public KitchenReport report() {
+        lock.lock();
+        try {
+            var sorted = Arrays.copyOf(latencies, completed);
+            Arrays.sort(sorted);
+            List<Duration> percentiles = new ArrayList<>(PERCENTILES.length);
+            for (var percentile : PERCENTILES)
+                percentiles.add(sorted.length == 0 ? Duration.ZERO
+                    : kitchenTime(sorted[(int) Math.ceil(percentile * sorted.length) - 1]));
+
+            var stations = new EnumMap<Station, KitchenReport.StationReport>(Station.class);
+            for (var station : STATIONS) {
+                var i = station.ordinal();
+                stations.put(station, new KitchenReport.StationReport(staff[i], queues.get(i).size(),
+                    longestQueues[i], done[i], helped[i], Duration.ofNanos(busyNanos[i])));
+            }
+            return new KitchenReport(kitchenTime(System.nanoTime() - openedAt), submitted, completed,
+                List.copyOf(percentiles), Collections.unmodifiableMap(stations));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends everyone home, leaving any unfinished orders unfinished.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            workArrived.signalAll();
+            allDone.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (var worker : workers)
+            worker.interrupt();
+    }
+
+    private void work(Station home) {
+        try {
+            while (true) {
+                var task = take(home);
+                if (task == null)
+                    return;
+
+                var nanos = task.duration.toNanos();
+                var deadline = System.nanoTime() + (long) (nanos / timeScale);
+                //noinspection ReassignedVariable
+                long left;
+                while ((left = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(left);
+                    if (Thread.interrupted())
+                        return;
+                }
+
+                Duration latency = null;
+                lock.lock();
+                try {
+                    var i = task.station.ordinal();
+                    done[i]++;
+                    busyNanos[i] += nanos;
+                    if (task.station != home)
+                        helped[i]++;
+                    if (task.next != null) {
+                        enqueue(task.next);
+                        workArrived.signalAll();
+                    }
+                    if (--task.ticket.remaining == 0) {
+                        latency = finish(task.ticket);
+                        if (--unfinished == 0)
+                            allDone.signalAll();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (latency != null)
+                    task.ticket.ready.complete(latency);
+            }
+        } catch (InterruptedException e) {
+            // The kitchen is closing.
+        }
+    }
+
+    /**
+     * Waits for a task from the worker's own station, or from the longest queue if stealing.
+     *
+     * @return The task, or {@code null} if the kitchen has closed
+     */
+    private Task take(Station home) throws InterruptedException {
+        lock.lock();
+        try {
+            while (!closed) {
+                var task = queues.get(home.ordinal()).pollFirst();
+                if (task != null)
+                    return task;
+                if (stealing) {
+                    Deque<Task> longest = null;
+                    for (var queue : queues)
+                        if (!queue.isEmpty() && (longest == null || queue.size() > longest.size()))
+                            longest = queue;
+                    if (longest != null)
+                        return longest.pollFirst();
+                }
+                workArrived.await();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(Task task) {
+        assert lock.isHeldByCurrentThread();
+        var i = task.station.ordinal();
+        var queue = queues.get(i);
+        queue.addLast(task);
+        longestQueues[i] = Math.max(longestQueues[i], queue.size());
+    }
+
+    /**
+     * Records an order as ready.
+     *
+     * @return How long the order took, to complete its future with once the lock is released
+     */
+    private Duration finish(Ticket ticket) {
+        assert lock.isHeldByCurrentThread();
+        var latency = System.nanoTime() - ticket.submittedAt;
+        if (completed == latencies.length)
+            latencies = Arrays.copyOf(latencies, completed * 2);
+        latencies[completed++] = latency;
+        return kitchenTime(latency);
+    }
+
+    private Duration kitchenTime(long realNanos) {
+        return Duration.ofNanos((long) (realNanos * timeScale));
+    }
+
+    /**
+     * An order on the line.
+     */
+    private static final class Ticket {
+        private final CompletableFuture<Duration> ready;
+        private long submittedAt;
+        private int remaining;
+
+        private Ticket() {
+            ready = new CompletableFuture<>();
+            submittedAt = 0;
+            remaining = 0;
+        }
+    }
+
+    /**
+     * One thing to do at one station for an order.
+     */
+    private static final class Task {
+        private final Station station;
+        private final Duration duration;
+        private final Ticket ticket;
+        private final Task next;
+
+        /**
+         * @param next The task which can only start once this one is done, if any
+         */
+        private Task(Station station, Duration duration, Ticket ticket, Task next) {
+            this.station = station;
+            this.duration = duration;
+            this.ticket = ticket;
+            this.next = next;
+        }
+    }
+}
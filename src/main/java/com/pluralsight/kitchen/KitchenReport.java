@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.kitchen;
+
+import java.io.*;
+import java.time.*;
+import java.util.*;
+
+/**
+ * How the line has done so far, all in kitchen time.
+ *
+ * @param elapsed   How long the kitchen has been open
+ * @param submitted The number of orders sent to the kitchen
+ * @param completed The number of orders finished
+ * @param latencies How long finished orders took, from being sent to the kitchen until their last task was done,
+ *                  at the 50th, 90th, 99th and 100th percentiles
+ * @param stations  How each station has done
+ */
+public record KitchenReport(Duration elapsed,
+                            long submitted,
+                            long completed,
+                            List<Duration> latencies,
+                            Map<Station, StationReport> stations) {
+    private static final double SECONDS_PER_HOUR = 3600;
+    private static final double NANOS_PER_SECOND = 1.0e9;
+    private static final String[] PERCENTILES = {"p50", "p90", "p99", "max"};
+
+    /**
+     * @return The number of orders finished per hour
+     */
+    public double ordersPerHour() {
+        return elapsed.isZero() ? 0 : completed * SECONDS_PER_HOUR * NANOS_PER_SECOND / elapsed.toNanos();
+    }
+
+    /**
+     * @param out The stream to print this report to
+     */
+    @SuppressWarnings("FeatureEnvy")
+    public void printTo(PrintStream out) {
+        out.printf("Kitchen open %s: %d of %d orders done (%.0f orders/hour)%n",
+            format(elapsed), completed, submitted, ordersPerHour());
+        out.print("Order time:");
+        for (//noinspection ReassignedVariable
+            int i = 0; i < latencies.size(); i++)
+            out.printf(" %s %s", PERCENTILES[i], format(latencies.get(i)));
+        out.println();
+        out.printf("  %-10s%7s%7s%9s%12s%9s%n", "Station", "Staff", "Queue", "Longest", "Tasks done", "Helped");
+        stations.forEach((station, report) -> out.printf("  %-10s%7d%7d%9d%12d%9d  busy %s (%.0f%%)%n",
+            station, report.staff(), report.queued(), report.longestQueue(), report.done(), report.helped(),
+            format(report.busy()), 100 * report.utilization(elapsed)));
+    }
+
+    private static String format(Duration duration) {
+        return "%d:%02d".formatted(duration.toMinutes(), duration.toSecondsPart());
+    }
+
+    /**
+     * How one station has done.
+     *
+     * @param staff        The number of people whose home is this station
+     * @param queued       The number of tasks waiting now
+     * @param longestQueue The most tasks ever waiting at once
+     * @param done         The number of tasks done
+     * @param helped       How many of those were done by someone from another station
+     * @param busy         The total time spent on this station's tasks
+     */
+    public record StationReport(int staff, int queued, int longestQueue, long done, long helped, Duration busy) {
+        /**
+         * @param elapsed How long the kitchen has been open
+         * @return The share of its own staff's time this station's work took up,
+         * which is more than 1 if others had to help
+         */
+        public double utilization(Duration elapsed) {
+            if (staff == 0 || elapsed.isZero())
+                return 0;
+            return (double) busy.toNanos() / elapsed.toNanos() / staff;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.kitchen;
+
+import java.time.*;
+
+/**
+ * How long each task takes on the line.
+ *
+ * @param bread      How long it takes to prepare the bread for a sandwich
+ * @param toasting   How long it takes to toast a sandwich
+ * @param assembly   How long it takes to assemble a sandwich, before counting its toppings
+ * @param perTopping How much longer assembly takes for each topping, extra servings included
+ * @param drink      How long it takes to pour a drink
+ * @param extra      How long it takes to bag an extra
+ */
+public record ServiceTimes(Duration bread,
+                           Duration toasting,
+                           Duration assembly,
+                           Duration perTopping,
+                           Duration drink,
+                           Duration extra) {
+    /**
+     * Rough times for a line that has had some practice.
+     */
+    public static final ServiceTimes DEFAULT = new ServiceTimes(
+        Duration.ofSeconds(20),
+        Duration.ofSeconds(90),
+        Duration.ofSeconds(30),
+        Duration.ofSeconds(5),
+        Duration.ofSeconds(15),
+        Duration.ofSeconds(5));
+
+    /**
+     * @throws IllegalArgumentException If any time is negative
+     */
+    public ServiceTimes {
+        for (var time : new Duration[]{bread, toasting, assembly, perTopping, drink, extra})
+            if (time.isNegative())
+                throw new IllegalArgumentException("Service times can't be negative");
+    }
+}
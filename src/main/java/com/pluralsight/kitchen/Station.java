@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.kitchen;
+
+/**
+ * Represents a station on the line, with its own queue of work.
+ */
+public enum Station {
+    /**
+     * Slicing and laying out the bread for a sandwich.
+     */
+    BREAD("Bread"),
+    /**
+     * Toasting a sandwich.
+     */
+    TOASTER("Toaster"),
+    /**
+     * Putting the toppings on a sandwich and wrapping it.
+     */
+    ASSEMBLY("Assembly"),
+    /**
+     * Pouring a drink.
+     */
+    DRINKS("Drinks"),
+    /**
+     * Bagging an extra.
+     */
+    EXTRAS("Extras");
+
+    private final String display;
+
+    Station(String display) {
+        this.display = display;
+    }
+
+    @Override
+    public String toString() {
+        return display;
+    }
+}
@@ -8,24 +8,50 @@ import com.pluralsight.io.*;
 import com.pluralsight.orders.drinks.*;
 import com.pluralsight.orders.extras.*;
 
+import java.time.*;
 import java.util.*;
 
 /**
  * Represents an order.
+ * The total is kept up to date as items are added, removed and changed,
+ * and is only worked out from scratch again after prices are reloaded.
  */
 @SuppressWarnings("NewClassNamingConvention")
 public final class Order implements LineItem {
+    /**
+     * How long an order holds its stock without being touched, unless told otherwise.
+     */
+    public static final Duration DEFAULT_RESERVATION_TTL = Duration.ofMinutes(15);
+
     private final List<ExtraItem> extras;
     private final List<SandwichItem> sandwiches;
     private final List<DrinkItem> drinks;
+    private final Reservation reservation;
+    private long totalCents;
+    private long pricedAt;
+    private long revision;
 
     /**
      * Creates an empty order.
      */
     public Order() {
+        this(DEFAULT_RESERVATION_TTL);
+    }
+
+    /**
+     * Creates an empty order.
+     * Stock is held for everything added to the order until it is checked out or cancelled.
+     *
+     * @param reservationTtl How long the order holds its stock without being touched
+     */
+    public Order(Duration reservationTtl) {
         extras = new ArrayList<>();
         sandwiches = new ArrayList<>();
         drinks = new ArrayList<>();
+        reservation = new Reservation(reservationTtl);
+        totalCents = 0;
+        pricedAt = BaseInventoriedFile.getCatalogEdits();
+        revision = 0;
     }
 
     /**
@@ -52,9 +78,17 @@ public final class Order implements LineItem {
 
     /**
      * @param extra An extra to add to this order
+     * @return Whether there was enough stock for the extra
      */
-    public void addExtra(ExtraType extra) {
-        extras.add(new ExtraItem(extra));
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    public boolean addExtra(ExtraType extra) {
+        var item = new ExtraItem(extra);
+        if (!reservation.hold(item))
+            return false;
+        extras.add(item);
+        totalCents += item.getPriceCents();
+        revision++;
+        return true;
     }
 
     /**
@@ -64,7 +98,10 @@ public final class Order implements LineItem {
         for (//noinspection ReassignedVariable
             int i = 0; i < extras.size(); i++)
             if (extras.get(i).getType() == extra) {
-                extras.remove(i);
+                var item = extras.remove(i);
+                reservation.drop(item);
+                totalCents -= item.getPriceCents();
+                revision++;
                 return;
             }
 
@@ -74,9 +111,17 @@ public final class Order implements LineItem {
     /**
      * @param drink The drink to add to this order
      * @param size  The size of the drink to add
+     * @return Whether there was enough stock for the drink
      */
-    public void addDrink(DrinkType drink, DrinkSize size) {
-        drinks.add(new DrinkItem(size, drink));
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    public boolean addDrink(DrinkType drink, DrinkSize size) {
+        var item = new DrinkItem(size, drink);
+        if (!reservation.hold(item))
+            return false;
+        drinks.add(item);
+        totalCents += item.getPriceCents();
+        revision++;
+        return true;
     }
 
     /**
@@ -87,7 +132,10 @@ public final class Order implements LineItem {
         for (//noinspection ReassignedVariable
             int i = 0; i < drinks.size(); i++)
             if (drinks.get(i).getType() == drink && drinks.get(i).getSize() == size) {
-                drinks.remove(i);
+                var item = drinks.remove(i);
+                reservation.drop(item);
+                totalCents -= item.getPriceCents();
+                revision++;
                 return;
             }
 
@@ -96,16 +144,59 @@ public final class Order implements LineItem {
 
     /**
      * @param sandwich The sandwich to add to this order
+     * @return Whether there was enough stock for the sandwich
      */
-    public void addSandwich(SandwichItem sandwich) {
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    public boolean addSandwich(SandwichItem sandwich) {
+        if (!sandwich.attach(this))
+            return false;
         sandwiches.add(sandwich);
+        totalCents += sandwich.getTotalCents();
+        revision++;
+        return true;
     }
 
     /**
      * @param index The index of the sandwich to remove from this order
      */
     public void removeSandwich(int index) {
-        sandwiches.remove(index);
+        var sandwich = sandwiches.remove(index);
+        sandwich.detach();
+        totalCents -= sandwich.getTotalCents();
+        revision++;
+    }
+
+    /**
+     * Called by a sandwich in this order when it changes.
+     *
+     * @param delta The change in the sandwich's total, in cents
+     */
+    void totalChanged(long delta) {
+        totalCents += delta;
+        revision++;
+    }
+
+    /**
+     * Counts the changes made to this order, so anything worked out from it can tell when it is out of date.
+     *
+     * @return The number of changes so far
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * @return The reservation holding stock for this order
+     */
+    public Reservation getReservation() {
+        return reservation;
+    }
+
+    /**
+     * Cancels this order, returning any stock it was holding.
+     */
+    public void cancel() {
+        reservation.cancel();
     }
 
     @Override
@@ -114,10 +205,21 @@ public final class Order implements LineItem {
     }
 
     @Override
-    public double getPrice() {
+    public long getPriceCents() {
         return 0;
     }
 
+    @Override
+    public long getTotalCents() {
+        var edits = BaseInventoriedFile.getCatalogEdits();
+        if (pricedAt != edits) {
+            // Prices were reloaded, so start over.
+            totalCents = LineItem.super.getTotalCents();
+            pricedAt = edits;
+        }
+        return totalCents;
+    }
+
     @Override
     public List<LineItem> getSubItems() {
         var subItems = new ArrayList<LineItem>();
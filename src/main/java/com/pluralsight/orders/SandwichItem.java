@@ -12,13 +12,19 @@ import java.util.*;
 
 /**
  * Represents a line item for a sandwich.
+ * The toppings' total is kept up to date at every size as toppings come and go,
+ * so neither changing the size nor asking for the total has to look at each topping.
  */
 public final class SandwichItem implements LineItem {
     private final List<ToppingItem> toppings;
+    private final long[] toppingCents;
     @SuppressWarnings("FieldNamingConvention")
     private SandwichSize size;
     private boolean toasted;
     private BreadItem bread;
+    private Reservation reservation;
+    private Order order;
+    private long pricedAt;
 
     /**
      * The sandwich is not toasted by default.
@@ -30,7 +36,13 @@ public final class SandwichItem implements LineItem {
         this.size = size;
         this.bread = new BreadItem(bread, size);
         toppings = new ArrayList<>();
+        toppingCents = new long[SandwichSize.values().length];
         toasted = false;
+        //noinspection AssignmentToNull
+        reservation = null;
+        //noinspection AssignmentToNull
+        order = null;
+        pricedAt = BaseInventoriedFile.getCatalogEdits();
     }
 
     /**
@@ -40,7 +52,11 @@ public final class SandwichItem implements LineItem {
     public SandwichItem(SandwichItem other) {
         this(other.size, other.bread.getType());
         toasted = other.toasted;
-        toppings.addAll(other.toppings.stream().map(ToppingItem::new).toList());
+        for (ToppingItem topping : other.toppings) {
+            var item = new ToppingItem(topping);
+            toppings.add(item);
+            count(item, 1);
+        }
     }
 
     /**
@@ -52,9 +68,22 @@ public final class SandwichItem implements LineItem {
 
     /**
      * @param size The size of the sandwich
+     * @return Whether there was enough stock for the new size
      */
-    @SuppressWarnings("unused")
-    public void setSize(SandwichSize size) {
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    public boolean setSize(SandwichSize size) {
+        var before = getTotalCents();
+        var oldSize = this.size;
+        applySize(size);
+        if (reservation != null && !reservation.hold(getStockedItems())) {
+            applySize(oldSize);
+            return false;
+        }
+        totalChanged(before);
+        return true;
+    }
+
+    private void applySize(SandwichSize size) {
         this.size = size;
         for (ToppingItem item : toppings)
             item.setSize(size);
@@ -85,10 +114,20 @@ public final class SandwichItem implements LineItem {
 
     /**
      * @param bread The type of bread on the sandwich
+     * @return Whether there was enough stock for the new bread
      */
-    @SuppressWarnings("unused")
-    public void setBread(BreadType bread) {
-        this.bread = new BreadItem(bread, size);
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    public boolean setBread(BreadType bread) {
+        var item = new BreadItem(bread, size);
+        if (reservation != null) {
+            if (!reservation.hold(item))
+                return false;
+            reservation.drop(this.bread);
+        }
+        var before = getTotalCents();
+        this.bread = item;
+        totalChanged(before);
+        return true;
     }
 
     /**
@@ -103,9 +142,18 @@ public final class SandwichItem implements LineItem {
      *
      * @param topping The topping to add
      * @param extra   Whether this topping is an extra serving
+     * @return Whether there was enough stock for the topping
      */
-    public void addTopping(ToppingType topping, boolean extra) {
-        toppings.add(new ToppingItem(topping, size, extra));
+    @SuppressWarnings("BooleanMethodNameMustStartWithQuestion")
+    public boolean addTopping(ToppingType topping, boolean extra) {
+        var item = new ToppingItem(topping, size, extra);
+        if (reservation != null && !reservation.hold(item))
+            return false;
+        var before = getTotalCents();
+        toppings.add(item);
+        count(item, 1);
+        totalChanged(before);
+        return true;
     }
 
     /**
@@ -118,27 +166,92 @@ public final class SandwichItem implements LineItem {
         for (//noinspection ReassignedVariable
             int i = 0; i < toppings.size(); i++)
             if (toppings.get(i).getType() == toppingType && toppings.get(i).isExtra() == extra) {
-                toppings.remove(i);
+                var before = getTotalCents();
+                var item = toppings.remove(i);
+                count(item, -1);
+                if (reservation != null)
+                    reservation.drop(item);
+                totalChanged(before);
                 return;
             }
 
         throw new IllegalStateException("That topping does not exist.");
     }
 
+    /**
+     * Starts holding stock for this sandwich in an order's reservation,
+     * and keeps the stock and the order's total up to date as the sandwich changes.
+     *
+     * @param order The order the sandwich is being added to
+     * @return Whether there was enough stock
+     */
+    @SuppressWarnings({"BooleanMethodNameMustStartWithQuestion", "ParameterHidesMemberVariable"})
+    boolean attach(Order order) {
+        var reservation = order.getReservation();
+        if (!reservation.hold(getStockedItems()))
+            return false;
+        this.reservation = reservation;
+        this.order = order;
+        return true;
+    }
+
+    /**
+     * Returns any stock held for this sandwich, and stops reporting changes to its order.
+     */
+    void detach() {
+        //noinspection AssignmentToNull
+        order = null;
+        if (reservation == null)
+            return;
+        reservation.drop(getStockedItems());
+        //noinspection AssignmentToNull
+        reservation = null;
+    }
+
+    private void count(ToppingItem item, int sign) {
+        for (var size : SandwichSize.values())
+            toppingCents[size.ordinal()] += sign * item.getPriceCents(size);
+    }
+
+    private void totalChanged(long before) {
+        if (order != null)
+            order.totalChanged(getTotalCents() - before);
+    }
+
+    private List<InventoriedLineItem> getStockedItems() {
+        List<InventoriedLineItem> items = new ArrayList<>(toppings.size() + 1);
+        items.add(bread);
+        items.addAll(toppings);
+        return items;
+    }
+
     @Override
     public String getName() {
         return size + " Sandwich";
     }
 
     @Override
-    public double getPrice() {
+    public long getPriceCents() {
         return switch (size) {
-            case FOUR_IN -> 5.5;
-            case EIGHT_IN -> 7.0;
-            case TWELVE_IN -> 8.5;
+            case FOUR_IN -> 550;
+            case EIGHT_IN -> 700;
+            case TWELVE_IN -> 850;
         };
     }
 
+    @Override
+    public long getTotalCents() {
+        var edits = BaseInventoriedFile.getCatalogEdits();
+        if (pricedAt != edits) {
+            // Prices were reloaded, so start over.
+            Arrays.fill(toppingCents, 0);
+            for (ToppingItem item : toppings)
+                count(item, 1);
+            pricedAt = edits;
+        }
+        return getPriceCents() + bread.getPriceCents() + toppingCents[size.ordinal()];
+    }
+
     @Override
     public List<LineItem> getSubItems() {
         List<LineItem> subItems = new ArrayList<>();
@@ -188,7 +301,7 @@ public final class SandwichItem implements LineItem {
         }
 
         @Override
-        public double getPrice() {
+        public long getPriceCents() {
             return 0;
         }
 
@@ -47,7 +47,7 @@ public final class BreadItem implements InventoriedLineItem {
     }
 
     @Override
-    public double getPrice() {
+    public long getPriceCents() {
         return 0;
     }
 
@@ -57,12 +57,17 @@ public final class BreadItem implements InventoriedLineItem {
     }
 
     @Override
-    public void consume() {
-        type.consume(switch (size) {
+    public Inventoried getInventoried() {
+        return type;
+    }
+
+    @Override
+    public int getAmount() {
+        return switch (size) {
             case FOUR_IN -> 1;
             case EIGHT_IN -> 2;
             case TWELVE_IN -> 3;
-        });
+        };
     }
 
     /**
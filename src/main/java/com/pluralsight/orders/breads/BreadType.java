@@ -20,6 +20,7 @@ public final class BreadType extends BaseInventoried {
     /**
      * @return The name of this type of bread
      */
+    @Override
     public String getName() {
         return name;
     }
@@ -20,8 +20,13 @@ public final class BreadTypeFile extends BaseInventoriedFile<BreadType> {
     }
 
     @Override
-    protected BreadType readFromLine(String line) {
-        return new BreadType(line);
+    protected BreadType readFromLine(FieldReader fields) {
+        return new BreadType(fields.rest());
+    }
+
+    @Override
+    protected boolean updateFrom(BreadType item, BreadType source) {
+        return false;
     }
 
     @Override
@@ -56,12 +56,17 @@ public final class DrinkItem implements InventoriedLineItem {
     }
 
     @Override
-    public void consume() {
-        type.consume(switch (size) {
+    public Inventoried getInventoried() {
+        return type;
+    }
+
+    @Override
+    public int getAmount() {
+        return switch (size) {
             case SMALL -> 1;
             case MEDIUM -> 2;
             case LARGE -> 3;
-        });
+        };
     }
 
     @Override
@@ -70,8 +75,8 @@ public final class DrinkItem implements InventoriedLineItem {
     }
 
     @Override
-    public double getPrice() {
-        return type.getPrice(size);
+    public long getPriceCents() {
+        return type.getPriceCents(size);
     }
 
     @Override
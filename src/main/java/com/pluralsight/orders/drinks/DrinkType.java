@@ -12,9 +12,9 @@ import com.pluralsight.io.*;
 public final class DrinkType extends BaseInventoried {
     @SuppressWarnings("FieldNamingConvention")
     private final String name;
-    private final double[] prices;
+    private volatile long[] prices;
 
-    DrinkType(String name, double[] prices) {
+    DrinkType(String name, long[] prices) {
         //noinspection IfCanBeAssertion
         if (prices.length != 3)
             throw new IllegalArgumentException("Bad length of \"prices\". Expected 3, got " + prices.length);
@@ -25,6 +25,7 @@ public final class DrinkType extends BaseInventoried {
     /**
      * @return The name of this drink
      */
+    @Override
     public String getName() {
         return name;
     }
@@ -33,9 +34,9 @@ public final class DrinkType extends BaseInventoried {
      * Gets the price of this drink at a given size.
      *
      * @param size The size to get the price for
-     * @return The price of the drink
+     * @return The price of the drink, in cents
      */
-    public double getPrice(DrinkSize size) {
+    public long getPriceCents(DrinkSize size) {
         return prices[switch (size) {
             case SMALL -> 0;
             case MEDIUM -> 1;
@@ -43,7 +44,14 @@ public final class DrinkType extends BaseInventoried {
         }];
     }
 
-    double[] getPrices() {
+    long[] getPrices() {
         return prices.clone();
     }
+
+    void setPrices(long[] prices) {
+        //noinspection IfCanBeAssertion
+        if (prices.length != 3)
+            throw new IllegalArgumentException("Bad length of \"prices\". Expected 3, got " + prices.length);
+        this.prices = prices.clone();
+    }
 }
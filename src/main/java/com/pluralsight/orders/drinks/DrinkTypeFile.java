@@ -8,7 +8,6 @@ import com.pluralsight.io.*;
 
 import java.io.*;
 import java.util.*;
-import java.util.stream.*;
 
 /**
  * A resource holding stock information on {@link DrinkType}s.
@@ -22,22 +21,28 @@ public final class DrinkTypeFile extends BaseInventoriedFile<DrinkType> {
     }
 
     @Override
-    protected DrinkType readFromLine(String line) {
-        var parts = line.split("\\|");
-
-        var prices = new double[]{
-            Double.parseDouble(parts[0]),
-            Double.parseDouble(parts[1]),
-            Double.parseDouble(parts[2]),
+    protected DrinkType readFromLine(FieldReader fields) {
+        var prices = new long[]{
+            fields.nextCents(),
+            fields.nextCents(),
+            fields.nextCents(),
         };
 
-        var name = Arrays.stream(parts).skip(3).collect(Collectors.joining("|"));
-        return new DrinkType(name, prices);
+        return new DrinkType(fields.rest(), prices);
+    }
+
+    @Override
+    protected boolean updateFrom(DrinkType item, DrinkType source) {
+        var prices = source.getPrices();
+        if (Arrays.equals(item.getPrices(), prices))
+            return false;
+        item.setPrices(prices);
+        return true;
     }
 
     @Override
     protected String convertToLine(DrinkType item) {
         var prices = item.getPrices();
-        return "%.2f|%.2f|%.2f|%s".formatted(prices[0], prices[1], prices[2], item.getName());
+        return "%s|%s|%s|%s".formatted(Money.format(prices[0]), Money.format(prices[1]), Money.format(prices[2]), item.getName());
     }
 }
@@ -37,8 +37,13 @@ public final class ExtraItem implements InventoriedLineItem {
     }
 
     @Override
-    public void consume() {
-        type.consume(1);
+    public Inventoried getInventoried() {
+        return type;
+    }
+
+    @Override
+    public int getAmount() {
+        return 1;
     }
 
     @Override
@@ -47,8 +52,8 @@ public final class ExtraItem implements InventoriedLineItem {
     }
 
     @Override
-    public double getPrice() {
-        return type.getPrice();
+    public long getPriceCents() {
+        return type.getPriceCents();
     }
 
     @Override
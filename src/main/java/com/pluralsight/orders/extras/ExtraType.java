@@ -12,23 +12,28 @@ import com.pluralsight.io.*;
 public final class ExtraType extends BaseInventoried {
     @SuppressWarnings("FieldNamingConvention")
     private final String name;
-    private final double price;
+    private volatile long price;
 
-    ExtraType(String name, double price) {
+    ExtraType(String name, long price) {
         this.name = name;
         this.price = price;
     }
 
     /**
-     * @return The price of this item
+     * @return The price of this item, in cents
      */
-    public double getPrice() {
+    public long getPriceCents() {
         return price;
     }
 
+    void setPrice(long price) {
+        this.price = price;
+    }
+
     /**
      * @return The name of this item
      */
+    @Override
     public String getName() {
         return name;
     }
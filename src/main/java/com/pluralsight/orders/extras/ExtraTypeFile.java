@@ -20,20 +20,23 @@ public final class ExtraTypeFile extends BaseInventoriedFile<ExtraType> {
     }
 
     @Override
-    protected ExtraType readFromLine(String line) {
-        var split = line.indexOf('|');
-
-        //noinspection IfCanBeAssertion
-        if (split == -1)
-            throw new IllegalArgumentException("The line did not have a separator");
-        var price = Double.parseDouble(line.substring(0, split));
-        var name = line.substring(split + 1);
+    protected ExtraType readFromLine(FieldReader fields) {
+        var price = fields.nextCents();
+        var name = fields.rest();
 
         return new ExtraType(name, price);
     }
 
+    @Override
+    protected boolean updateFrom(ExtraType item, ExtraType source) {
+        if (item.getPriceCents() == source.getPriceCents())
+            return false;
+        item.setPrice(source.getPriceCents());
+        return true;
+    }
+
     @Override
     protected String convertToLine(ExtraType item) {
-        return "%.2f|%s".formatted(item.getPrice(), item.getName());
+        return "%s|%s".formatted(Money.format(item.getPriceCents()), item.getName());
     }
 }
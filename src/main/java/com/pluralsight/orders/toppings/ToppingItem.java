@@ -44,8 +44,17 @@ public final class ToppingItem implements InventoriedLineItem {
     }
 
     @Override
-    public double getPrice() {
-        return extra ? type.getExtraPrice(size) : type.getPrice(size);
+    public long getPriceCents() {
+        return getPriceCents(size);
+    }
+
+    /**
+     * @param size The size of sandwich
+     * @return The price this topping would have on a sandwich of that size, in cents
+     */
+    @SuppressWarnings("ParameterHidesMemberVariable")
+    public long getPriceCents(SandwichSize size) {
+        return extra ? type.getExtraPriceCents(size) : type.getPriceCents(size);
     }
 
     @Override
@@ -54,12 +63,17 @@ public final class ToppingItem implements InventoriedLineItem {
     }
 
     @Override
-    public void consume() {
-        type.consume(switch (size) {
+    public Inventoried getInventoried() {
+        return type;
+    }
+
+    @Override
+    public int getAmount() {
+        return switch (size) {
             case FOUR_IN -> 1;
             case EIGHT_IN -> 2;
             case TWELVE_IN -> 3;
-        });
+        };
     }
 
     /**
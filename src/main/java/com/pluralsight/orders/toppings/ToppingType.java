@@ -13,10 +13,10 @@ import com.pluralsight.orders.*;
 public final class ToppingType extends BaseInventoried {
     @SuppressWarnings("FieldNamingConvention")
     private final String name;
-    private final String category;
-    private final double[] prices;
+    private volatile String category;
+    private volatile long[] prices;
 
-    ToppingType(String name, String category, double[] prices) {
+    ToppingType(String name, String category, long[] prices) {
         //noinspection IfCanBeAssertion
         if (prices.length != 6)
             throw new IllegalArgumentException("Bad length of \"prices\". Expected 6, got " + prices.length);
@@ -29,6 +29,7 @@ public final class ToppingType extends BaseInventoried {
     /**
      * @return The name of the topping
      */
+    @Override
     public String getName() {
         return name;
     }
@@ -44,9 +45,9 @@ public final class ToppingType extends BaseInventoried {
      * Gets the price of this topping for a given size of sandwich.
      *
      * @param size The size of the sandwich
-     * @return The price of the topping
+     * @return The price of the topping, in cents
      */
-    public double getPrice(SandwichSize size) {
+    public long getPriceCents(SandwichSize size) {
         return prices[switch (size) {
             case FOUR_IN -> 0;
             case EIGHT_IN -> 1;
@@ -58,9 +59,9 @@ public final class ToppingType extends BaseInventoried {
      * Gets the price for extra of this topping for a given size of sandwich.
      *
      * @param size The size of the sandwich
-     * @return The price of the topping
+     * @return The price of the topping, in cents
      */
-    public double getExtraPrice(SandwichSize size) {
+    public long getExtraPriceCents(SandwichSize size) {
         return prices[switch (size) {
             case FOUR_IN -> 3;
             case EIGHT_IN -> 4;
@@ -68,7 +69,18 @@ public final class ToppingType extends BaseInventoried {
         }];
     }
 
-    double[] getPrices() {
+    void setCategory(String category) {
+        this.category = category;
+    }
+
+    long[] getPrices() {
         return prices.clone();
     }
+
+    void setPrices(long[] prices) {
+        //noinspection IfCanBeAssertion
+        if (prices.length != 6)
+            throw new IllegalArgumentException("Bad length of \"prices\". Expected 6, got " + prices.length);
+        this.prices = prices.clone();
+    }
 }
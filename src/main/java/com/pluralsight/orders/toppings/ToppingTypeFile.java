@@ -22,20 +22,36 @@ public final class ToppingTypeFile extends BaseInventoriedFile<ToppingType> {
     }
 
     @Override
-    protected ToppingType readFromLine(String line) {
-        var parts = line.split("\\|");
-
-        var prices = Arrays.stream(parts).limit(6).mapToDouble(Double::parseDouble).toArray();
-        var category = parts[6];
-        var name = Arrays.stream(parts).skip(7).collect(Collectors.joining("|"));
+    protected ToppingType readFromLine(FieldReader fields) {
+        var prices = new long[6];
+        for (//noinspection ReassignedVariable
+            int i = 0; i < prices.length; i++)
+            prices[i] = fields.nextCents();
+        var category = fields.nextString();
+        var name = fields.rest();
 
         return new ToppingType(name, category, prices);
     }
 
+    @Override
+    protected String categoryOf(ToppingType item) {
+        return item.getCategory();
+    }
+
+    @Override
+    protected boolean updateFrom(ToppingType item, ToppingType source) {
+        var prices = source.getPrices();
+        if (Arrays.equals(item.getPrices(), prices) && item.getCategory().equals(source.getCategory()))
+            return false;
+        item.setPrices(prices);
+        item.setCategory(source.getCategory());
+        return true;
+    }
+
     @SuppressWarnings("FeatureEnvy")
     @Override
     protected String convertToLine(ToppingType item) {
-        var prices = Arrays.stream(item.getPrices()).mapToObj("%.2f"::formatted).collect(Collectors.joining("|"));
+        var prices = Arrays.stream(item.getPrices()).mapToObj(Money::format).collect(Collectors.joining("|"));
 
         return "%s|%s|%s".formatted(prices, item.getCategory(), item.getName());
     }
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.promotions;
+
+import com.pluralsight.io.*;
+
+import java.util.*;
+
+/**
+ * Represents a line item for a promotion applied to an order.
+ */
+final class DiscountItem implements LineItem {
+    private final String name;
+    private final long discountCents;
+
+    /**
+     * @param name          The name of the promotion
+     * @param discountCents The amount taken off the order, in cents
+     */
+    DiscountItem(String name, long discountCents) {
+        this.name = name;
+        this.discountCents = discountCents;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getPriceCents() {
+        return -discountCents;
+    }
+
+    @Override
+    public List<LineItem> getSubItems() {
+        return List.of();
+    }
+}
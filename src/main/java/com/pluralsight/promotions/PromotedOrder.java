@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.promotions;
+
+import com.pluralsight.io.*;
+import com.pluralsight.orders.*;
+
+import java.time.*;
+import java.util.*;
+
+/**
+ * Represents an order with the promotions which apply to it listed after its items.
+ * The promotions are only matched again once the order, the catalog's prices, the promotions or the minute change.
+ */
+public final class PromotedOrder implements LineItem {
+    private static final long MILLIS_PER_MINUTE = Duration.ofMinutes(1).toMillis();
+
+    private final Order order;
+    private final PromotionFile promotions;
+    private PromotionIndex matchedIndex;
+    private long matchedRevision;
+    private long matchedEdits;
+    private long matchedMinute;
+    private List<LineItem> discounts;
+    private long discountCents;
+
+    PromotedOrder(Order order, PromotionFile promotions) {
+        this.order = order;
+        this.promotions = promotions;
+        //noinspection AssignmentToNull
+        matchedIndex = null;
+        discounts = List.of();
+        discountCents = 0;
+    }
+
+    /**
+     * @return The order being discounted
+     */
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * @return The discounts which currently apply to the order
+     */
+    public synchronized List<LineItem> getDiscounts() {
+        var index = promotions.getIndex();
+        var clock = promotions.getClock();
+        var revision = order.getRevision();
+        var edits = BaseInventoriedFile.getCatalogEdits();
+        var minute = clock.millis() / MILLIS_PER_MINUTE;
+        if (index != matchedIndex || revision != matchedRevision || edits != matchedEdits || minute != matchedMinute) {
+            discounts = Collections.unmodifiableList(index.match(order, LocalTime.now(clock)));
+            discountCents = 0;
+            for (var discount : discounts)
+                discountCents -= discount.getPriceCents();
+            matchedIndex = index;
+            matchedRevision = revision;
+            matchedEdits = edits;
+            matchedMinute = minute;
+        }
+        return discounts;
+    }
+
+    @Override
+    public String getName() {
+        return order.getName();
+    }
+
+    @Override
+    public long getPriceCents() {
+        return order.getPriceCents();
+    }
+
+    @Override
+    public synchronized long getTotalCents() {
+        getDiscounts();
+        return order.getTotalCents() - discountCents;
+    }
+
+    @Override
+    public List<LineItem> getSubItems() {
+        var items = order.getSubItems();
+        var discounts = getDiscounts();
+        if (discounts.isEmpty())
+            return items;
+        List<LineItem> subItems = new ArrayList<>(items.size() + discounts.size());
+        subItems.addAll(items);
+        subItems.addAll(discounts);
+        return Collections.unmodifiableList(subItems);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.promotions;
+
+import java.time.*;
+import java.util.*;
+
+/**
+ * Represents one line of a promotion file, before it is compiled into a {@link PromotionIndex}.
+ *
+ * @param name   The name shown on the receipt when the promotion applies
+ * @param from   The time of day the promotion starts, or {@code null} if it runs all day
+ * @param to     The time of day the promotion ends, exclusive, or {@code null} if it runs all day
+ * @param kind   How the discount is worked out
+ * @param amount The amount off in cents, or the percentage off, depending on the kind
+ * @param items  The items the order must contain, e.g. {@code drink} or {@code topping:Meat}, repeated to require more than one
+ */
+record Promotion(String name, LocalTime from, LocalTime to, Kind kind, long amount, List<String> items) {
+    /**
+     * Whether the promotion is running at a time of day.
+     * A promotion which ends before it starts runs over midnight.
+     *
+     * @param time The time of day
+     * @return Whether the promotion is running
+     */
+    boolean isRunningAt(LocalTime time) {
+        if (from == null || to == null)
+            return true;
+        if (from.isBefore(to))
+            return !time.isBefore(from) && time.isBefore(to);
+        return !time.isBefore(from) || time.isBefore(to);
+    }
+
+    /**
+     * How a promotion's discount is worked out.
+     */
+    enum Kind {
+        /**
+         * A fixed amount off each time the order contains every item in the promotion.
+         * Items used up by one such promotion can't count towards another.
+         */
+        AMOUNT,
+        /**
+         * A percentage off every item matching the first item in the promotion,
+         * as long as the order also contains the rest.
+         */
+        PERCENT
+    }
+}
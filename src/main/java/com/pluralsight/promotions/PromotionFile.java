@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.promotions;
+
+import com.pluralsight.io.*;
+import com.pluralsight.orders.*;
+
+import java.io.*;
+import java.time.*;
+import java.util.*;
+
+/**
+ * Represents a list of promotions backed by a file.
+ * Each line is a name, the time of day the promotion starts and ends (both blank if it runs all day),
+ * {@code AMOUNT} or {@code PERCENT} and how much to take off, then the items the order must contain,
+ * e.g. {@code Combo|||AMOUNT|2.00|sandwich|drink|extra:Chips}.
+ */
+public final class PromotionFile {
+    @SuppressWarnings("FieldNamingConvention")
+    private final File file;
+    private final Clock clock;
+    private volatile PromotionIndex index;
+
+    private PromotionFile(File file, Clock clock) {
+        this.file = file;
+        this.clock = clock;
+        index = loadIndex(file);
+    }
+
+    /**
+     * Loads a new {@code PromotionFile} from the given file, using the system clock.
+     *
+     * @param file The file to load from
+     * @return A new list of promotions
+     */
+    public static PromotionFile load(File file) {
+        return load(file, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Loads a new {@code PromotionFile} from the given file.
+     *
+     * @param file  The file to load from
+     * @param clock The clock giving the time of day promotions are checked against
+     * @return A new list of promotions
+     */
+    public static PromotionFile load(File file, Clock clock) {
+        return new PromotionFile(file, clock);
+    }
+
+    private static Promotion parseLine(FieldReader fields) {
+        var name = fields.nextString();
+        var from = parseTime(fields.nextString());
+        var to = parseTime(fields.nextString());
+        if (from == null != (to == null))
+            throw new IllegalArgumentException("Promotion \"" + name + "\" must have both a start and an end time, or neither");
+
+        var kindName = fields.nextString();
+        var kind = Arrays.stream(Promotion.Kind.values())
+            .filter(k -> k.name().equalsIgnoreCase(kindName))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Unknown discount \"" + kindName + "\" in promotion \"" + name + "\""));
+        var amount = switch (kind) {
+            case AMOUNT -> fields.nextCents();
+            case PERCENT -> fields.nextInt();
+        };
+
+        var items = new ArrayList<String>();
+        while (fields.hasNext())
+            items.add(fields.nextString());
+
+        return new Promotion(name, from, to, kind, amount, List.copyOf(items));
+    }
+
+    private static LocalTime parseTime(String time) {
+        return time.isBlank() ? null : LocalTime.parse(time.trim());
+    }
+
+    private static PromotionIndex loadIndex(File file) {
+        try (var fields = new FieldReader(new FileReader(file))) {
+            var promotions = new ArrayList<Promotion>();
+            while (fields.nextLine())
+                promotions.add(parseLine(fields));
+            return new PromotionIndex(promotions);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Re-reads the file, swapping in the new promotions if they load successfully.
+     * Orders already wrapped by {@link #applyTo(Order)} pick up the new promotions the next time they are priced.
+     */
+    public void reload() {
+        index = loadIndex(file);
+    }
+
+    /**
+     * @return The number of promotions in this file
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Wraps an order so that it shows, and totals up, whichever promotions currently apply to it.
+     *
+     * @param order The order
+     * @return The order with its discounts, for putting on a {@link Receipt}
+     */
+    public PromotedOrder applyTo(Order order) {
+        return new PromotedOrder(order, this);
+    }
+
+    PromotionIndex getIndex() {
+        return index;
+    }
+
+    Clock getClock() {
+        return clock;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.promotions;
+
+import com.pluralsight.io.*;
+import com.pluralsight.orders.*;
+
+import java.time.*;
+import java.util.*;
+
+/**
+ * A set of promotions compiled for matching against orders.
+ * Every item a promotion can ask for is numbered, and each promotion is filed under the one of its items
+ * the fewest other promotions ask for.
+ * Matching an order only looks at the promotions filed under items actually in the order,
+ * so promotions for things the customer didn't buy cost nothing, however many there are.
+ */
+final class PromotionIndex {
+    private static final char QUALIFIER_SEPARATOR = ':';
+    private static final long PERCENT = 100;
+
+    private final Promotion[] promotions;
+    private final int[][] required;
+    private final long[][] needed;
+    private final int[][] byItem;
+    private final int[] bare;
+    private final List<Map<String, Integer>> qualified;
+    private final int itemCount;
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * @param promotions The promotions, in the order they should be tried
+     * @throws IllegalArgumentException If a promotion asks for an item which can never be in an order
+     */
+    PromotionIndex(List<Promotion> promotions) {
+        this.promotions = promotions.toArray(Promotion[]::new);
+        bare = new int[Kind.values().length];
+        Arrays.fill(bare, -1);
+        qualified = new ArrayList<>();
+        for (var ignored : Kind.values())
+            qualified.add(new HashMap<>());
+
+        // Number the items, and count how many promotions ask for each.
+        var ids = new HashMap<String, Integer>();
+        var popularity = new ArrayList<Integer>();
+        required = new int[this.promotions.length][];
+        needed = new long[this.promotions.length][];
+        for (//noinspection ReassignedVariable
+            int i = 0; i < this.promotions.length; i++) {
+            var promotion = this.promotions[i];
+            if (promotion.items().isEmpty())
+                throw new IllegalArgumentException("Promotion \"" + promotion.name() + "\" must ask for at least one item");
+
+            var counts = new LinkedHashMap<Integer, Long>();
+            for (var item : promotion.items()) {
+                var id = ids.computeIfAbsent(item, key -> {
+                    var next = popularity.size();
+                    register(key, next, promotion);
+                    popularity.add(0);
+                    return next;
+                });
+                if (counts.merge(id, 1L, Long::sum) == 1)
+                    popularity.set(id, popularity.get(id) + 1);
+            }
+            required[i] = counts.keySet().stream().mapToInt(Integer::intValue).toArray();
+            needed[i] = counts.values().stream().mapToLong(Long::longValue).toArray();
+        }
+        itemCount = popularity.size();
+
+        // File each promotion under its least popular item.
+        var keys = new int[this.promotions.length];
+        var filed = new int[itemCount];
+        for (//noinspection ReassignedVariable
+            int i = 0; i < this.promotions.length; i++) {
+            var key = required[i][0];
+            for (var id : required[i])
+                if (popularity.get(id) < popularity.get(key))
+                    key = id;
+            keys[i] = key;
+            filed[key]++;
+        }
+        byItem = new int[itemCount][];
+        for (//noinspection ReassignedVariable
+            int id = 0; id < itemCount; id++)
+            byItem[id] = new int[filed[id]];
+        Arrays.fill(filed, 0);
+        for (//noinspection ReassignedVariable
+            int i = 0; i < this.promotions.length; i++)
+            byItem[keys[i]][filed[keys[i]]++] = i;
+
+        scratch = ThreadLocal.withInitial(() -> new Scratch(itemCount, this.promotions.length));
+    }
+
+    private void register(String item, int id, Promotion promotion) {
+        var separator = item.indexOf(QUALIFIER_SEPARATOR);
+        var prefix = separator < 0 ? item : item.substring(0, separator);
+        var kind = Arrays.stream(Kind.values())
+            .filter(k -> k.prefix.equals(prefix))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Unknown item \"" + item + "\" in promotion \"" + promotion.name() + "\""));
+        if (separator < 0)
+            bare[kind.ordinal()] = id;
+        else
+            qualified.get(kind.ordinal()).put(item.substring(separator + 1), id);
+    }
+
+    /**
+     * @return The number of promotions
+     */
+    int size() {
+        return promotions.length;
+    }
+
+    /**
+     * Works out which promotions apply to an order.
+     * The total taken off never comes to more than the order itself.
+     *
+     * @param order The order
+     * @param time  The time of day
+     * @return The discounts, in the order the promotions were listed in
+     */
+    List<LineItem> match(Order order, LocalTime time) {
+        var work = scratch.get();
+        try {
+            var orderCents = order.getTotalCents();
+            collect(order, orderCents, work);
+            var candidates = work.gatherCandidates(byItem);
+            Arrays.sort(work.candidates, 0, candidates);
+
+            List<LineItem> discounts = new ArrayList<>();
+            var available = orderCents;
+            for (//noinspection ReassignedVariable
+                int c = 0; c < candidates && available > 0; c++) {
+                var i = work.candidates[c];
+                var promotion = promotions[i];
+                if (!promotion.isRunningAt(time))
+                    continue;
+
+                var discount = 0L;
+                var name = promotion.name();
+                switch (promotion.kind()) {
+                    case AMOUNT -> {
+                        var times = Long.MAX_VALUE;
+                        for (//noinspection ReassignedVariable
+                            int r = 0; r < required[i].length; r++)
+                            times = Math.min(times, work.left[required[i][r]] / needed[i][r]);
+                        if (times == 0)
+                            continue;
+                        for (//noinspection ReassignedVariable
+                            int r = 0; r < required[i].length; r++)
+                            work.left[required[i][r]] -= needed[i][r] * times;
+                        discount = promotion.amount() * times;
+                        if (times > 1)
+                            name += " x" + times;
+                    }
+                    case PERCENT -> {
+                        var present = true;
+                        for (//noinspection ReassignedVariable
+                            int r = 0; present && r < required[i].length; r++)
+                            present = work.counts[required[i][r]] >= needed[i][r];
+                        if (!present)
+                            continue;
+                        // Round half up to the nearest cent.
+                        discount = (work.cents[required[i][0]] * promotion.amount() + PERCENT / 2) / PERCENT;
+                    }
+                }
+
+                discount = Math.min(discount, available);
+                if (discount <= 0)
+                    continue;
+                available -= discount;
+                discounts.add(new DiscountItem(name, discount));
+            }
+            return discounts;
+        } finally {
+            work.clear();
+        }
+    }
+
+    private void collect(Order order, long orderCents, Scratch work) {
+        work.add(bare[Kind.ORDER.ordinal()], orderCents);
+        for (var sandwich : order.getSandwiches()) {
+            var size = sandwich.getSize();
+            add(work, Kind.SANDWICH, size.toString(), null, sandwich.getTotalCents());
+            add(work, Kind.BREAD, sandwich.getBread().getName(), null, 0);
+            for (var topping : sandwich.getToppings()) {
+                var type = topping.getType();
+                if (topping.isExtra())
+                    add(work, Kind.EXTRA_TOPPING, type.getName(), type.getCategory(), type.getExtraPriceCents(size));
+                else
+                    add(work, Kind.TOPPING, type.getName(), type.getCategory(), type.getPriceCents(size));
+            }
+        }
+        for (var drink : order.getDrinks())
+            add(work, Kind.DRINK, drink.getType().getName(), drink.getSize().toString(),
+                drink.getType().getPriceCents(drink.getSize()));
+        for (var extra : order.getExtras())
+            add(work, Kind.EXTRA, extra.getName(), null, extra.getPriceCents());
+    }
+
+    private void add(Scratch work, Kind kind, String name, String other, long priceCents) {
+        work.add(bare[kind.ordinal()], priceCents);
+        var ids = qualified.get(kind.ordinal());
+        if (ids.isEmpty())
+            return;
+        work.add(ids.getOrDefault(name, -1), priceCents);
+        if (other != null)
+            work.add(ids.getOrDefault(other, -1), priceCents);
+    }
+
+    /**
+     * The kinds of item a promotion can ask for, by the prefix they are written with.
+     * A prefix on its own matches any item of that kind;
+     * followed by a colon and a name, category or size, it matches only those items.
+     */
+    private enum Kind {
+        ORDER("order"),
+        SANDWICH("sandwich"),
+        BREAD("bread"),
+        TOPPING("topping"),
+        EXTRA_TOPPING("extra-topping"),
+        DRINK("drink"),
+        EXTRA("extra");
+
+        private final String prefix;
+
+        Kind(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * Working space for matching one order, reused from one order to the next on the same thread.
+     */
+    private static final class Scratch {
+        private final long[] counts;
+        private final long[] cents;
+        private final long[] left;
+        private final int[] present;
+        private final int[] seen;
+        private final int[] candidates;
+        private int presentCount;
+        private int generation;
+
+        private Scratch(int items, int promotions) {
+            counts = new long[items];
+            cents = new long[items];
+            left = new long[items];
+            present = new int[items];
+            seen = new int[promotions];
+            candidates = new int[promotions];
+            presentCount = 0;
+            generation = 0;
+        }
+
+        private void add(int id, long priceCents) {
+            if (id < 0)
+                return;
+            if (counts[id]++ == 0)
+                present[presentCount++] = id;
+            left[id]++;
+            cents[id] += priceCents;
+        }
+
+        /**
+         * Gathers the promotions filed under the items present into {@link #candidates}.
+         *
+         * @return The number of candidates
+         */
+        private int gatherCandidates(int[][] byItem) {
+            if (++generation == 0) {
+                Arrays.fill(seen, 0);
+                generation = 1;
+            }
+            var count = 0;
+            for (//noinspection ReassignedVariable
+                int p = 0; p < presentCount; p++)
+                for (var promotion : byItem[present[p]])
+                    if (seen[promotion] != generation) {
+                        seen[promotion] = generation;
+                        candidates[count++] = promotion;
+                    }
+            return count;
+        }
+
+        private void clear() {
+            for (//noinspection ReassignedVariable
+                int p = 0; p < presentCount; p++) {
+                var id = present[p];
+                counts[id] = 0;
+                cents[id] = 0;
+                left[id] = 0;
+            }
+            presentCount = 0;
+        }
+    }
+}
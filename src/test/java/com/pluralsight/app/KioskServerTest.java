@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.app;
+
+import com.pluralsight.io.*;
+import com.pluralsight.kitchen.*;
+import com.pluralsight.orders.breads.*;
+import com.pluralsight.orders.drinks.*;
+import com.pluralsight.orders.extras.*;
+import com.pluralsight.orders.toppings.*;
+import com.pluralsight.promotions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KioskServerTest {
+    private static final int STOCK = 1000;
+    private static final int BUYERS = 200;
+    private static final int QUITTERS = 100;
+    // New order, add an extra, the first extra, view the cart, check out, confirm, then leave.
+    private static final String BUY_CHIPS = "1\n3\n1\n4\n5\ny\n2\n";
+    // New order, add an extra, the first extra, then disconnect with it still in the cart.
+    private static final String HOLD_CHIPS = "1\n3\n1\n";
+    private static final Map<Station, Integer> STAFF = Map.of(
+        Station.BREAD, 1,
+        Station.TOASTER, 1,
+        Station.ASSEMBLY, 1,
+        Station.DRINKS, 1,
+        Station.EXTRAS, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentSessionsShareOneInventory() throws Exception {
+        var toppings = new ToppingTypeFile(write("toppings.csv", "100|1.00|2.00|3.00|0.50|1.00|1.50|Meat|Ham"));
+        var breads = new BreadTypeFile(write("breads.csv", "100|White Bread"));
+        var drinks = new DrinkTypeFile(write("drinks.csv", "100|2.00|2.50|3.00|Pepsi"));
+        var extras = new ExtraTypeFile(write("extras.csv", STOCK + "|1.50|Chips"));
+        var signatures = SignatureFile.load(write("signatures.csv"), toppings, breads);
+        var promotions = PromotionFile.load(write("promotions.csv"));
+
+        try (var kitchen = new Kitchen(ServiceTimes.DEFAULT, STAFF, true, 3600);
+             var store = new ReceiptStore(directory.resolve("receipts").toFile());
+             var receipts = new AsyncReceiptWriter(store)) {
+            var shop = new SandwichShop(toppings, breads, drinks, extras, signatures, promotions,
+                receipts, true, kitchen);
+            var thanked = new AtomicInteger();
+            try (var server = new KioskServer(shop, 0)) {
+                var serving = new Thread(server::serve, "kiosk-server");
+                serving.start();
+
+                var start = new CountDownLatch(1);
+                var kiosks = Executors.newFixedThreadPool(BUYERS + QUITTERS);
+                try {
+                    var sessions = new ArrayList<Future<?>>();
+                    for (//noinspection ReassignedVariable
+                        int i = 0; i < BUYERS + QUITTERS; i++) {
+                        var buying = i < BUYERS;
+                        sessions.add(kiosks.submit(() -> {
+                            start.await();
+                            var transcript = visit(server.getPort(), buying ? BUY_CHIPS : HOLD_CHIPS);
+                            if (buying && transcript.contains("Thanks for eating with us!"))
+                                thanked.incrementAndGet();
+                            return null;
+                        }));
+                    }
+                    start.countDown();
+                    for (var session : sessions)
+                        session.get(1, TimeUnit.MINUTES);
+                } finally {
+                    kiosks.shutdownNow();
+                }
+
+                var deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+                while (server.getSessionCount() > 0 && System.nanoTime() - deadline < 0)
+                    //noinspection BusyWait
+                    Thread.sleep(10);
+                assertEquals(0, server.getSessionCount());
+            }
+
+            assertEquals(BUYERS, thanked.get());
+            var chips = extras.findByName("Chips").orElseThrow();
+            // Every chip held by a kiosk which disconnected has been given back, and no more.
+            assertTrue(chips.reserve(STOCK - BUYERS));
+            assertFalse(chips.reserve(1));
+            chips.release(STOCK - BUYERS);
+            extras.flush();
+            assertEquals(STOCK - BUYERS + "|1.50|Chips", Files.readAllLines(directory.resolve("extras.csv")).get(0));
+            receipts.close();
+            assertEquals(BUYERS, store.findBetween(Instant.EPOCH, Instant.now().plusSeconds(60)).size());
+        }
+    }
+
+    private static String visit(int port, String input) throws IOException {
+        try (var socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.getOutputStream().write(input.getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+            socket.shutdownOutput();
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private File write(String name, String... lines) throws IOException {
+        return Files.write(directory.resolve(name), List.of(lines)).toFile();
+    }
+}
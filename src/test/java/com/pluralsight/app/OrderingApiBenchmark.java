@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.app;
+
+import com.pluralsight.io.*;
+import com.pluralsight.kitchen.*;
+import com.pluralsight.orders.breads.*;
+import com.pluralsight.orders.drinks.*;
+import com.pluralsight.orders.extras.*;
+import com.pluralsight.orders.toppings.*;
+import com.pluralsight.promotions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.net.*;
+import java.net.http.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives {@link OrderingApi} with closed-loop clients, each repeatedly starting an order,
+ * adding a sandwich and an extra, and checking it out, then prints throughput and latency percentiles.
+ * Run with {@code mvn -Pbenchmark test}; results are printed, not asserted.
+ */
+class OrderingApiBenchmark {
+    private static final int CLIENTS = 16;
+    private static final Duration WARM_UP = Duration.ofSeconds(3);
+    private static final Duration MEASURE = Duration.ofSeconds(10);
+    private static final int STOCK = 100_000_000;
+    private static final String SANDWICH = """
+        {"size": "8", "bread": "White Bread", "toasted": true, "toppings": [{"name": "Ham", "extra": true}]}""";
+    private static final String EXTRA = "{\"name\": \"Chips\"}";
+    private static final Map<Station, Integer> STAFF = Map.of(
+        Station.BREAD, 1,
+        Station.TOASTER, 1,
+        Station.ASSEMBLY, 1,
+        Station.DRINKS, 1,
+        Station.EXTRAS, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sustainedOrdering() throws Exception {
+        // As EntryPoint does; it must be set before the first server is created.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        var toppings = new ToppingTypeFile(write("toppings.csv", STOCK + "|1.00|2.00|3.00|0.50|1.00|1.50|Meat|Ham"));
+        var breads = new BreadTypeFile(write("breads.csv", STOCK + "|White Bread"));
+        var drinks = new DrinkTypeFile(write("drinks.csv", STOCK + "|2.00|2.50|3.00|Pepsi"));
+        var extras = new ExtraTypeFile(write("extras.csv", STOCK + "|1.50|Chips"));
+        var signatures = SignatureFile.load(write("signatures.csv"), toppings, breads);
+        var promotions = PromotionFile.load(write("promotions.csv"));
+
+        try (var kitchen = new Kitchen(ServiceTimes.DEFAULT, STAFF, true, 3600);
+             var store = new ReceiptStore(directory.resolve("receipts").toFile());
+             var receipts = new AsyncReceiptWriter(store);
+             var api = new OrderingApi(toppings, breads, drinks, extras, signatures, promotions,
+                 receipts, false, kitchen, 0)) {
+            api.start();
+            var base = URI.create("http://localhost:" + api.getPort() + "/");
+            var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+            run(client, base, WARM_UP);
+            var latencies = run(client, base, MEASURE);
+
+            var orders = latencies.length / 4;
+            var seconds = MEASURE.toNanos() / 1.0e9;
+            Arrays.sort(latencies);
+            System.out.printf("%d clients for %.0fs: %,d orders (%.0f/s), %,d requests (%.0f/s)%n",
+                CLIENTS, seconds, orders, orders / seconds, latencies.length, latencies.length / seconds);
+            System.out.printf("Request latency ms: p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), latencies[latencies.length - 1] / 1.0e6);
+            assertTrue(orders > 0);
+        }
+    }
+
+    /**
+     * @return The latency of every request made, in nanoseconds
+     */
+    private static long[] run(HttpClient client, URI base, Duration duration) throws Exception {
+        var stop = new AtomicBoolean();
+        var executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            var futures = new ArrayList<Future<long[]>>();
+            for (//noinspection ReassignedVariable
+                int i = 0; i < CLIENTS; i++)
+                futures.add(executor.submit(() -> {
+                    var times = new ArrayList<Long>();
+                    while (!stop.get()) {
+                        var order = "orders/" + ((Map<?, ?>) Json.parse(send(client, base, "orders", null, 201, times)))
+                            .get("id");
+                        send(client, base, order + "/sandwiches", SANDWICH, 201, times);
+                        send(client, base, order + "/extras", EXTRA, 201, times);
+                        send(client, base, order + "/checkout", null, 200, times);
+                    }
+                    return times.stream().mapToLong(Long::longValue).toArray();
+                }));
+            Thread.sleep(duration.toMillis());
+            stop.set(true);
+            var all = new ArrayList<long[]>();
+            for (var future : futures)
+                all.add(future.get(1, TimeUnit.MINUTES));
+            return all.stream().flatMapToLong(Arrays::stream).toArray();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String send(HttpClient client, URI base, String path, String body, int status, List<Long> times)
+        throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(base.resolve(path))
+            .POST(body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        var start = System.nanoTime();
+        var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        times.add(System.nanoTime() - start);
+        assertEquals(status, response.statusCode(), response::body);
+        return response.body();
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1.0e6;
+    }
+
+    private File write(String name, String... lines) throws IOException {
+        return Files.write(directory.resolve(name), List.of(lines)).toFile();
+    }
+}
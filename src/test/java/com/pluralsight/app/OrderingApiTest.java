@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.app;
+
+import com.pluralsight.io.*;
+import com.pluralsight.kitchen.*;
+import com.pluralsight.orders.breads.*;
+import com.pluralsight.orders.drinks.*;
+import com.pluralsight.orders.extras.*;
+import com.pluralsight.orders.toppings.*;
+import com.pluralsight.promotions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.net.*;
+import java.net.http.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderingApiTest {
+    private static final Map<Station, Integer> STAFF = Map.of(
+        Station.BREAD, 1,
+        Station.TOASTER, 1,
+        Station.ASSEMBLY, 1,
+        Station.DRINKS, 1,
+        Station.EXTRAS, 1);
+
+    @TempDir
+    Path directory;
+
+    private HttpClient client;
+    private URI base;
+
+    @BeforeEach
+    void createClient() {
+        client = HttpClient.newHttpClient();
+    }
+
+    @Test
+    void ordersRoundTripThroughCheckout() throws Exception {
+        var toppings = new ToppingTypeFile(write("toppings.csv", "100|1.00|2.00|3.00|0.50|1.00|1.50|Meat|Ham"));
+        var breads = new BreadTypeFile(write("breads.csv", "100|White Bread"));
+        var drinks = new DrinkTypeFile(write("drinks.csv", "1|2.00|2.50|3.00|Pepsi"));
+        var extras = new ExtraTypeFile(write("extras.csv", "10|1.50|Chips"));
+        var signatures = SignatureFile.load(write("signatures.csv"), toppings, breads);
+        var promotions = PromotionFile.load(write("promotions.csv"));
+
+        try (var kitchen = new Kitchen(ServiceTimes.DEFAULT, STAFF, true, 3600);
+             var store = new ReceiptStore(directory.resolve("receipts").toFile());
+             var receipts = new AsyncReceiptWriter(store)) {
+            try (var api = new OrderingApi(toppings, breads, drinks, extras, signatures, promotions,
+                receipts, true, kitchen, 0)) {
+                api.start();
+                base = URI.create("http://localhost:" + api.getPort() + "/");
+
+                var catalog = object(send("GET", "catalog", null, 200));
+                assertEquals(List.of("White Bread"), catalog.get("breads"));
+                assertEquals(List.of(Map.of("name", "Chips", "priceCents", 150L)), catalog.get("extras"));
+
+                var id = (String) object(send("POST", "orders", null, 201)).get("id");
+                var order = "orders/" + id;
+                send("POST", order + "/sandwiches", """
+                    {"size": "8", "bread": "White Bread", "toasted": true, "toppings": [{"name": "Ham", "extra": true}]}
+                    """, 201);
+                send("POST", order + "/drinks", "{\"name\": \"Pepsi\", \"size\": \"small\"}", 201);
+                send("POST", order + "/extras", "{\"name\": \"Chips\"}", 201);
+                send("POST", order + "/extras", "{\"name\": \"Chips\"}", 201);
+                var view = object(send("DELETE", order + "/extras/1", null, 200));
+                assertEquals(1, ((List<?>) view.get("extras")).size());
+
+                // The only Pepsi is held by the first order.
+                var other = "orders/" + object(send("POST", "orders", null, 201)).get("id");
+                send("POST", other + "/drinks", "{\"name\": \"Pepsi\", \"size\": \"small\"}", 409);
+                send("POST", other + "/extras", "{\"name\": \"Caviar\"}", 404);
+                send("POST", other + "/extras", "{\"name\": ", 400);
+                send("PUT", other, null, 405);
+                send("POST", other + "/checkout", null, 400);
+                send("DELETE", other, null, 200);
+                send("GET", other, null, 404);
+
+                var sold = object(send("POST", order + "/checkout", null, 200));
+                assertEquals(view.get("totalCents"), sold.get("totalCents"));
+                assertEquals(view.get("receipt"), sold.get("receipt"));
+                assertEquals(true, sold.get("recorded"));
+                send("GET", order, null, 404);
+            }
+
+            assertFalse(drinks.findByName("Pepsi").orElseThrow().isInStock());
+            var chips = extras.findByName("Chips").orElseThrow();
+            assertTrue(chips.reserve(9));
+            assertFalse(chips.reserve(1));
+            chips.release(9);
+
+            receipts.close();
+            var stored = store.findBetween(Instant.EPOCH, Instant.now().plusSeconds(60));
+            assertEquals(1, stored.size());
+        }
+    }
+
+    @Test
+    void saleIsFinalEvenIfItsReceiptCannotBeRecorded() throws Exception {
+        var toppings = new ToppingTypeFile(write("toppings.csv", "100|1.00|2.00|3.00|0.50|1.00|1.50|Meat|Ham"));
+        var breads = new BreadTypeFile(write("breads.csv", "100|White Bread"));
+        var drinks = new DrinkTypeFile(write("drinks.csv", "100|2.00|2.50|3.00|Pepsi"));
+        var extras = new ExtraTypeFile(write("extras.csv", "10|1.50|Chips"));
+        var signatures = SignatureFile.load(write("signatures.csv"), toppings, breads);
+        var promotions = PromotionFile.load(write("promotions.csv"));
+
+        try (var kitchen = new Kitchen(ServiceTimes.DEFAULT, STAFF, true, 3600);
+             var store = new ReceiptStore(directory.resolve("receipts").toFile());
+             var receipts = new AsyncReceiptWriter(store);
+             var api = new OrderingApi(toppings, breads, drinks, extras, signatures, promotions,
+                 receipts, true, kitchen, 0)) {
+            api.start();
+            base = URI.create("http://localhost:" + api.getPort() + "/");
+
+            var order = "orders/" + object(send("POST", "orders", null, 201)).get("id");
+            send("POST", order + "/extras", "{\"name\": \"Chips\"}", 201);
+            receipts.close();
+
+            var sold = object(send("POST", order + "/checkout", null, 200));
+            assertEquals(false, sold.get("recorded"));
+            // The order is gone, so a retry can't sell its stock a second time.
+            send("POST", order + "/checkout", null, 404);
+
+            var chips = extras.findByName("Chips").orElseThrow();
+            assertTrue(chips.reserve(9));
+            assertFalse(chips.reserve(1));
+            chips.release(9);
+        }
+    }
+
+    private String send(String method, String path, String body, int status) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(base.resolve(path))
+            .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(status, response.statusCode(), () -> method + " /" + path + ": " + response.body());
+        return response.body();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(String json) {
+        return (Map<String, Object>) Json.parse(json);
+    }
+
+    private File write(String name, String... lines) throws IOException {
+        return Files.write(directory.resolve(name), List.of(lines)).toFile();
+    }
+}
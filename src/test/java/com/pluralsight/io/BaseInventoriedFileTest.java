@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.io;
+
+import com.pluralsight.orders.extras.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BaseInventoriedFileTest {
+    private static final long NEVER_COMPACT = Long.MAX_VALUE;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void journaledChangesSurviveACrash() throws IOException {
+        var path = write("extras.csv", "100|1.50|Chips", "50|3.00|Cookie");
+        var file = new ExtraTypeFile(path.toFile());
+        file.enableJournal(NEVER_COMPACT);
+        file.findByName("Chips").orElseThrow().consume(3);
+        file.findByName("Cookie").orElseThrow().consume(1);
+        file.findByName("Chips").orElseThrow().consume(2);
+
+        // The first file is never closed or flushed, as if the process had died.
+        var recovered = new ExtraTypeFile(path.toFile());
+        assertEquals(95, stockOf(recovered, "Chips"));
+        assertEquals(49, stockOf(recovered, "Cookie"));
+        assertFalse(Files.exists(journal(path)));
+
+        // Replaying again must not apply the same changes twice.
+        assertEquals(95, stockOf(new ExtraTypeFile(path.toFile()), "Chips"));
+    }
+
+    @Test
+    void compactingJournalAlreadyInTheFileIsNotReplayed() throws IOException {
+        // A crash after the snapshot holding entries 1 to 3 was written, but before their journal was deleted.
+        var path = write("extras.csv", "#journal|3", "97|1.50|Chips");
+        write("extras.csv.journal.compacting", "1|0|1", "2|0|1", "3|0|1");
+        write("extras.csv.journal", "4|0|2");
+
+        var recovered = new ExtraTypeFile(path.toFile());
+        assertEquals(95, stockOf(recovered, "Chips"));
+        assertFalse(Files.exists(journal(path)));
+        assertFalse(Files.exists(compactingJournal(path)));
+        assertEquals("#journal|4", Files.readAllLines(path).get(0));
+    }
+
+    @Test
+    void compactingJournalMissingFromTheFileIsReplayed() throws IOException {
+        // A crash while the snapshot was being written, so the file still predates the compacting journal.
+        var path = write("extras.csv", "#journal|1", "99|1.50|Chips");
+        write("extras.csv.journal.compacting", "1|0|1", "2|0|1", "3|0|1");
+        write("extras.csv.journal", "4|0|2");
+
+        assertEquals(95, stockOf(new ExtraTypeFile(path.toFile()), "Chips"));
+    }
+
+    @Test
+    void unnumberedJournalIsReplayedInFull() throws IOException {
+        var path = write("extras.csv", "100|1.50|Chips", "50|3.00|Cookie");
+        write("extras.csv.journal", "0|4", "1|2");
+
+        var recovered = new ExtraTypeFile(path.toFile());
+        assertEquals(96, stockOf(recovered, "Chips"));
+        assertEquals(48, stockOf(recovered, "Cookie"));
+    }
+
+    @Test
+    void savesWaitingOnAGroupCommitSurviveAnImmediateExit() throws Exception {
+        var path = write("extras.csv", "100|1.50|Chips");
+        var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        var process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+            ConsumeAndExit.class.getName(), path.toString())
+            .inheritIO()
+            .start();
+        assertEquals(0, process.waitFor());
+        assertEquals(97, stockOf(new ExtraTypeFile(path.toFile()), "Chips"));
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        return Files.write(directory.resolve(name), List.of(lines));
+    }
+
+    private static Path journal(Path path) {
+        return path.resolveSibling(path.getFileName() + ".journal");
+    }
+
+    private static Path compactingJournal(Path path) {
+        return path.resolveSibling(path.getFileName() + ".journal.compacting");
+    }
+
+    private static int stockOf(InventoriedFile<? extends BaseInventoried> file, String name) {
+        BaseInventoried item = file.findByName(name).orElseThrow();
+        return item.getStock();
+    }
+
+    /**
+     * Consumes stock in the default write-through mode, then exits straight away without flushing.
+     */
+    static final class ConsumeAndExit {
+        public static void main(String[] args) {
+            var file = new ExtraTypeFile(new File(args[0]));
+            file.findByName("Chips").orElseThrow().consume(3);
+            System.exit(0);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.io;
+
+import com.pluralsight.orders.extras.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BaseInventoriedTest {
+    private static final int STOCK = 20_000;
+    private static final int THREADS = 8;
+    private static final int CYCLES = 200_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        var file = extrasWithStock(STOCK);
+        BaseInventoried chips = file.findByName("Chips").orElseThrow();
+
+        var sold = new AtomicInteger();
+        var released = new AtomicInteger();
+        runConcurrently(() -> {
+            var random = ThreadLocalRandom.current();
+            while (chips.reserve(1)) {
+                assertTrue(chips.getStock() <= STOCK, "Stock grew while being consumed");
+                if (random.nextInt(4) == 0) {
+                    chips.release(1);
+                    released.incrementAndGet();
+                } else {
+                    chips.consumeReserved(1);
+                    sold.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(STOCK, sold.get());
+        assertTrue(released.get() > 0);
+        assertEquals(0, chips.getAmount());
+        assertEquals(0, chips.getStock());
+        assertFalse(chips.isInStock());
+        assertTrue(file.getItems().isEmpty());
+
+        file.flush();
+        BaseInventoried saved = new ExtraTypeFile(file.getFile()).findByName("Chips").orElseThrow();
+        assertEquals(0, saved.getStock());
+    }
+
+    @Test
+    void stockCountsReservedUnitsUntilTheyAreConsumed() throws Exception {
+        var file = extrasWithStock(STOCK);
+        BaseInventoried chips = file.findByName("Chips").orElseThrow();
+
+        // Readers must never see a unit counted both as available and as reserved, or as neither.
+        var stop = new AtomicBoolean();
+        var torn = new AtomicInteger();
+        var reader = new Thread(() -> {
+            while (!stop.get())
+                if (chips.getStock() != STOCK)
+                    torn.incrementAndGet();
+        });
+        reader.start();
+        try {
+            runConcurrently(() -> {
+                for (//noinspection ReassignedVariable
+                    int i = 0; i < CYCLES; i++) {
+                    assertTrue(chips.reserve(1));
+                    chips.release(1);
+                }
+            });
+        } finally {
+            stop.set(true);
+            reader.join();
+        }
+
+        assertEquals(0, torn.get());
+        assertEquals(STOCK, chips.getAmount());
+    }
+
+    private ExtraTypeFile extrasWithStock(int stock) throws IOException {
+        var path = directory.resolve("extras.csv");
+        Files.writeString(path, stock + "|1.50|Chips%n".formatted());
+        return new ExtraTypeFile(path.toFile());
+    }
+
+    private static void runConcurrently(Runnable task) throws Exception {
+        var start = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            var futures = new Future<?>[THREADS];
+            for (//noinspection ReassignedVariable
+                int i = 0; i < THREADS; i++)
+                futures[i] = executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                });
+            start.countDown();
+            for (var future : futures)
+                future.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
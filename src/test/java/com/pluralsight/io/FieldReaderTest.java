@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.io;
+
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.math.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FieldReaderTest {
+    private static final int LINES = 20_000;
+
+    @Test
+    void readsTheSameFieldsAsSplitting() throws IOException {
+        var random = new Random(42);
+        var text = new StringBuilder();
+        var expected = new ArrayList<String>();
+        for (//noinspection ReassignedVariable
+            int i = 0; i < LINES; i++) {
+            var line = "%d|%s|%s|%s|%s".formatted(random.nextInt(), cents(random), random.nextBoolean(),
+                word(random), name(random));
+            expected.add(line);
+            text.append(line).append(random.nextBoolean() ? "\n" : "\r\n");
+            if (random.nextInt(10) == 0)
+                text.append(random.nextBoolean() ? "\n" : "  \n");
+        }
+
+        try (var fields = new FieldReader(new StringReader(text.toString()))) {
+            for (var line : expected) {
+                assertTrue(fields.nextLine());
+                var parts = line.split("\\|", 5);
+                assertEquals(Integer.parseInt(parts[0]), fields.nextInt(), line);
+                assertEquals(new BigDecimal(parts[1]).movePointRight(Money.CENT_DIGITS).longValueExact(),
+                    fields.nextCents(), line);
+                assertEquals(Boolean.parseBoolean(parts[2]), fields.nextBoolean(), line);
+                assertEquals(parts[3], fields.nextString(), line);
+                assertEquals(parts[4], fields.rest(), line);
+                assertFalse(fields.hasNext(), line);
+            }
+            assertFalse(fields.nextLine());
+        }
+    }
+
+    @Test
+    void readsLinesLongerThanItsBuffer() throws IOException {
+        var name = "x".repeat(50_000);
+        try (var fields = new FieldReader(new StringReader("1|" + name + "\n2|short"))) {
+            assertTrue(fields.nextLine());
+            assertEquals(1, fields.nextInt());
+            assertEquals(name, fields.rest());
+            assertTrue(fields.nextLine());
+            assertEquals(2, fields.nextInt());
+            assertEquals("short", fields.rest());
+            assertFalse(fields.nextLine());
+        }
+    }
+
+    @Test
+    void rejectsWhatTheOldParsersRejected() throws IOException {
+        try (var fields = new FieldReader(new StringReader("12x|1.5.0|1.005|99999999999|a"))) {
+            assertTrue(fields.nextLine());
+            assertThrows(NumberFormatException.class, fields::nextInt);
+            assertTrue(fields.skipIf("12x"));
+            assertThrows(NumberFormatException.class, fields::nextCents);
+            assertEquals("1.5.0", fields.nextString());
+            assertThrows(NumberFormatException.class, fields::nextCents);
+            assertEquals("1.005", fields.nextString());
+            assertThrows(NumberFormatException.class, fields::nextInt);
+            assertEquals(99_999_999_999L, fields.nextLong());
+            assertEquals("a", fields.rest());
+            assertThrows(IllegalArgumentException.class, fields::nextString);
+        }
+    }
+
+    private static String cents(Random random) {
+        var cents = random.nextInt(1_000_000) - 500_000;
+        return switch (random.nextInt(3)) {
+            case 0 -> new BigDecimal(cents).movePointLeft(Money.CENT_DIGITS).toPlainString();
+            case 1 -> Integer.toString(cents / 100);
+            default -> new BigDecimal(cents / 10).movePointLeft(1).toPlainString();
+        };
+    }
+
+    private static String word(Random random) {
+        var word = new StringBuilder();
+        var length = random.nextInt(12);
+        for (//noinspection ReassignedVariable
+            int i = 0; i < length; i++)
+            word.append((char) ('a' + random.nextInt(26)));
+        return word.toString();
+    }
+
+    private static String name(Random random) {
+        // Names may hold separators of their own, which only rest() keeps.
+        return word(random) + (random.nextBoolean() ? "|" + word(random) : "") + " " + word(random);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.io;
+
+import com.pluralsight.orders.extras.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures how reserving and consuming stock scales as more threads work on the same items.
+ * Run with {@code mvn -Pbenchmark test}; results are printed, not asserted.
+ */
+class StockContentionBenchmark {
+    private static final int ITEMS = 4;
+    private static final int STOCK = 1_000_000_000;
+    private static final Duration WARM_UP = Duration.ofSeconds(1);
+    private static final Duration MEASURE = Duration.ofSeconds(2);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reserveAndConsume() throws Exception {
+        var lines = new ArrayList<String>();
+        for (//noinspection ReassignedVariable
+            int i = 0; i < ITEMS; i++)
+            lines.add(STOCK + "|1.50|Extra " + i);
+        var path = Files.write(directory.resolve("extras.csv"), lines);
+        var file = new ExtraTypeFile(path.toFile());
+        // Saving is measured elsewhere; here it only has to stay out of the way.
+        file.enableWriteBehind(Duration.ofHours(1), Integer.MAX_VALUE);
+        List<BaseInventoried> items = List.copyOf(file.getAllItems());
+
+        var cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("Reserve and consume, %d items, %d cores%n", ITEMS, cores);
+        System.out.printf("%8s%16s%12s%n", "threads", "ops/s", "scaling");
+        double single = 0;
+        for (//noinspection ReassignedVariable
+            int threads = 1; threads <= Math.max(2 * cores, 4); threads *= 2) {
+            run(items, threads, WARM_UP);
+            var opsPerSecond = run(items, threads, MEASURE) / (MEASURE.toNanos() / 1.0e9);
+            if (threads == 1)
+                single = opsPerSecond;
+            System.out.printf("%8d%16.0f%11.2fx%n", threads, opsPerSecond, opsPerSecond / single);
+        }
+
+        var consumed = 0L;
+        for (var item : items)
+            consumed += STOCK - item.getStock();
+        assertTrue(consumed > 0);
+    }
+
+    /**
+     * @return The number of units reserved and consumed
+     */
+    private static long run(List<BaseInventoried> items, int threads, Duration duration) throws Exception {
+        var stop = new AtomicBoolean();
+        var total = new LongAdder();
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var futures = new ArrayList<Future<?>>();
+            for (//noinspection ReassignedVariable
+                int t = 0; t < threads; t++) {
+                var first = t;
+                futures.add(executor.submit(() -> {
+                    long done = 0;
+                    //noinspection ReassignedVariable
+                    int next = first;
+                    while (!stop.get()) {
+                        var item = items.get(next++ % items.size());
+                        if (item.reserve(1)) {
+                            item.consumeReserved(1);
+                            done++;
+                        }
+                    }
+                    total.add(done);
+                }));
+            }
+            Thread.sleep(duration.toMillis());
+            stop.set(true);
+            for (var future : futures)
+                future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        return total.sum();
+    }
+}
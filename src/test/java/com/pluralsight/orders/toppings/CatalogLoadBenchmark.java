@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) Benjamin Bergman 2024.
+ */
+
+package com.pluralsight.orders.toppings;
+
+import com.pluralsight.io.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.lang.management.*;
+import java.math.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures loading a catalog of a million toppings with {@link FieldReader},
+ * against splitting each line with a regular expression the way the loaders used to.
+ * Run with {@code mvn -Pbenchmark test}; results are printed, not asserted.
+ */
+class CatalogLoadBenchmark {
+    private static final int LINES = 1_000_000;
+    private static final int WARM_UPS = 2;
+    private static final int RUNS = 5;
+
+    @TempDir
+    Path directory;
+    // Keeps the stock counts parsed by the old loader from being optimised away.
+    private long stockSeen;
+
+    @Test
+    void loadMillionLineCatalog() throws IOException {
+        var path = directory.resolve("toppings.csv");
+        try (var out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (//noinspection ReassignedVariable
+                int i = 0; i < LINES; i++)
+                out.write("%d|1.00|2.00|3.00|0.50|1.00|1.50|Category %d|Topping %d%n".formatted(i, i % 10, i));
+        }
+        var file = path.toFile();
+
+        System.out.printf("Loading %,d lines (%,d bytes)%n", LINES, Files.size(path));
+        System.out.printf("%-16s%12s%16s%n", "loader", "best ms", "bytes/line");
+        stockSeen = 0;
+        measure("FieldReader", () -> new ToppingTypeFile(file).getAllItems().size());
+        measure("String.split", () -> splitLoad(file).size());
+        assertTrue(stockSeen > 0);
+    }
+
+    private static void measure(String name, IntSupplier load) {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var thread = Thread.currentThread().getId();
+        for (//noinspection ReassignedVariable
+            int i = 0; i < WARM_UPS; i++)
+            assertEquals(LINES, load.getAsInt());
+
+        var best = Long.MAX_VALUE;
+        var bytes = Long.MAX_VALUE;
+        for (//noinspection ReassignedVariable
+            int i = 0; i < RUNS; i++) {
+            var allocated = threads.getThreadAllocatedBytes(thread);
+            var start = System.nanoTime();
+            assertEquals(LINES, load.getAsInt());
+            best = Math.min(best, System.nanoTime() - start);
+            bytes = Math.min(bytes, threads.getThreadAllocatedBytes(thread) - allocated);
+        }
+        System.out.printf("%-16s%12.1f%16d%n", name, best / 1.0e6, bytes / LINES);
+    }
+
+    /**
+     * Loads toppings the way {@code ToppingTypeFile} did before {@link FieldReader}.
+     */
+    private List<ToppingType> splitLoad(File file) {
+        var items = new ArrayList<ToppingType>();
+        try (var in = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                var fields = line.split("\\|");
+                var prices = new long[6];
+                for (//noinspection ReassignedVariable
+                    int i = 0; i < prices.length; i++)
+                    prices[i] = new BigDecimal(fields[i + 1]).movePointRight(2).longValueExact();
+                stockSeen += Integer.parseInt(fields[0]);
+                items.add(new ToppingType(fields[8], fields[7], prices));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return items;
+    }
+}